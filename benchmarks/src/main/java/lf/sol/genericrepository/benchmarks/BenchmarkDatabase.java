@@ -0,0 +1,106 @@
+package lf.sol.genericrepository.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceConfiguration;
+import lf.sol.genericrepository.benchmarks.model.Address;
+import lf.sol.genericrepository.benchmarks.model.Customer;
+import lf.sol.genericrepository.benchmarks.model.Tag;
+import lf.sol.genericrepository.repository.GenericRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory H2 database with Hibernate, seeded with a dataset of a configurable size
+ * Each customer has an address (shared by many customers) and two tags
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    public static final int CITIES = 50;
+    public static final int NAMES = 1000;
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private BenchmarkDatabase(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Method that creates a database seeded with a number of customers
+     * @param customers the number of customers
+     * @return the database
+     */
+    public static BenchmarkDatabase seeded(int customers){
+        BenchmarkDatabase database = empty();
+        database.seed(customers);
+        return database;
+    }
+
+    /**
+     * Method that creates a database without data, useful to build the queries against the metamodel
+     * @return the database
+     */
+    public static BenchmarkDatabase empty(){
+        PersistenceConfiguration configuration = new PersistenceConfiguration("benchmarks")
+                .managedClass(Address.class)
+                .managedClass(Customer.class)
+                .managedClass(Tag.class)
+                .property(PersistenceConfiguration.JDBC_URL, "jdbc:h2:mem:benchmarks-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+                .property(PersistenceConfiguration.JDBC_USER, "sa")
+                .property(PersistenceConfiguration.JDBC_PASSWORD, "")
+                .property(PersistenceConfiguration.SCHEMAGEN_DATABASE_ACTION, "drop-and-create")
+                .property("hibernate.jdbc.batch_size", String.valueOf(SEED_BATCH_SIZE))
+                .property("hibernate.order_inserts", "true");
+        return new BenchmarkDatabase(configuration.createEntityManagerFactory());
+    }
+
+    /**
+     * Method that creates a new entity manager, that must be closed by the caller
+     * @return the entity manager
+     */
+    public EntityManager createEntityManager(){
+        return entityManagerFactory.createEntityManager();
+    }
+
+    /**
+     * Method that seeds the database with a deterministic dataset, through the batched saves of the repository
+     * @param customers the number of customers
+     */
+    private void seed(int customers){
+        Random random = new Random(customers);
+        try(EntityManager entityManager = createEntityManager()){
+            entityManager.getTransaction().begin();
+            List<Address> addresses = new ArrayList<>();
+            for(int i = 0; i < CITIES; i++){
+                addresses.add(new Address("city" + i, "country" + (i % 5)));
+            }
+            new GenericRepository<>(Address.class, entityManager).saveAllNew(addresses);
+
+            GenericRepository<Customer, Long> customerRepository = new GenericRepository<>(Customer.class, entityManager);
+            GenericRepository<Tag, Long> tagRepository = new GenericRepository<>(Tag.class, entityManager);
+            for(int start = 0; start < customers; start += SEED_BATCH_SIZE){
+                List<Customer> batch = new ArrayList<>();
+                List<Tag> tags = new ArrayList<>();
+                for(int i = start; i < Math.min(start + SEED_BATCH_SIZE, customers); i++){
+                    Customer customer = new Customer("name" + random.nextInt(NAMES), "customer" + i + "@mail.com",
+                            18 + random.nextInt(60), random.nextBoolean(),
+                            entityManager.getReference(Address.class, addresses.get(random.nextInt(CITIES)).getId()));
+                    batch.add(customer);
+                    tags.add(new Tag("tag" + random.nextInt(20), customer));
+                    tags.add(new Tag("tag" + random.nextInt(20), customer));
+                }
+                customerRepository.saveAllNew(batch, SEED_BATCH_SIZE);
+                tagRepository.saveAllNew(tags, SEED_BATCH_SIZE);
+            }
+            entityManager.getTransaction().commit();
+        }
+    }
+
+    @Override
+    public void close(){
+        entityManagerFactory.close();
+    }
+}
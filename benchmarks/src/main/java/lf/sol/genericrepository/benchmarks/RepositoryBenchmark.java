@@ -0,0 +1,96 @@
+package lf.sol.genericrepository.benchmarks;
+
+import jakarta.persistence.EntityManager;
+import lf.sol.genericrepository.benchmarks.model.Customer;
+import lf.sol.genericrepository.exception.NoCountPaginationException;
+import lf.sol.genericrepository.exception.WrongPaginationParamsException;
+import lf.sol.genericrepository.repository.GenericOrder;
+import lf.sol.genericrepository.repository.GenericRepository;
+import lf.sol.genericrepository.repository.Pagination;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks of the query paths of the repository, against a seeded in-memory database
+ * The persistence context is cleared after each operation, like at the end of a request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final GenericOrder[] ORDERS = GenericOrder.getOrders("name", "id");
+
+    @Param({"10000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private EntityManager entityManager;
+    private GenericRepository<Customer, Long> repository;
+
+    @Setup
+    public void setup(){
+        database = BenchmarkDatabase.seeded(rows);
+        entityManager = database.createEntityManager();
+        repository = new GenericRepository<>(Customer.class, entityManager);
+    }
+
+    @TearDown
+    public void tearDown(){
+        entityManager.close();
+        database.close();
+    }
+
+    @Benchmark
+    public Pagination<Customer> shallowPage() throws NoCountPaginationException, WrongPaginationParamsException {
+        try{
+            return repository.getSome(repository.initConditionWithCount().isTrue("active"), 0, PAGE_SIZE, ORDERS);
+        }finally{
+            entityManager.clear();
+        }
+    }
+
+    @Benchmark
+    public Pagination<Customer> deepPage() throws NoCountPaginationException, WrongPaginationParamsException {
+        try{
+            return repository.getSome(repository.initConditionWithCount().isTrue("active"), rows / 2 - PAGE_SIZE, PAGE_SIZE, ORDERS);
+        }finally{
+            entityManager.clear();
+        }
+    }
+
+    @Benchmark
+    public Long total(){
+        return repository.total();
+    }
+
+    @Benchmark
+    public Long totalWithNestedCondition(){
+        return repository.total(repository.initConditionWithCount().equal("address.city", "city1"));
+    }
+
+    @Benchmark
+    public List<Customer> getAllByName(){
+        try{
+            return repository.getAll(repository.initCondition().equal("name", "name1"), ORDERS);
+        }finally{
+            entityManager.clear();
+        }
+    }
+
+    @Benchmark
+    public List<Customer> getAllWithDisjunctionLike(){
+        try{
+            return repository.getAll(repository.initCondition().disjunctionLike("name12", "name", "email")
+                    .equal("address.city", "city1"), ORDERS);
+        }finally{
+            entityManager.clear();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package lf.sol.genericrepository.benchmarks.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import lf.sol.genericrepository.model.GenericEntity;
+
+@Entity
+public class Address implements GenericEntity {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String city;
+    private String country;
+
+    protected Address() {
+    }
+
+    public Address(String city, String country) {
+        this.city = city;
+        this.country = country;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+}
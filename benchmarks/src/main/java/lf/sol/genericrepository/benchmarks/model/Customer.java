@@ -0,0 +1,68 @@
+package lf.sol.genericrepository.benchmarks.model;
+
+import jakarta.persistence.*;
+import lf.sol.genericrepository.model.GenericEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(indexes = {@Index(columnList = "name"), @Index(columnList = "age")})
+public class Customer implements GenericEntity {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+    private String email;
+    private Integer age;
+    private boolean active;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Address address;
+    @OneToMany(mappedBy = "customer")
+    private List<Tag> tags = new ArrayList<>();
+
+    protected Customer() {
+    }
+
+    public Customer(String name, String email, Integer age, boolean active, Address address) {
+        this.name = name;
+        this.email = email;
+        this.age = age;
+        this.active = active;
+        this.address = address;
+    }
+
+    public Customer(Long id, String name, String email, Integer age, boolean active, Address address) {
+        this(name, email, age, active, address);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public List<Tag> getTags() {
+        return tags;
+    }
+}
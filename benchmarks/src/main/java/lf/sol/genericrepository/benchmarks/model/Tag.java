@@ -0,0 +1,35 @@
+package lf.sol.genericrepository.benchmarks.model;
+
+import jakarta.persistence.*;
+import lf.sol.genericrepository.model.GenericEntity;
+
+@Entity
+public class Tag implements GenericEntity {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String label;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Customer customer;
+
+    protected Tag() {
+    }
+
+    public Tag(String label, Customer customer) {
+        this.label = label;
+        this.customer = customer;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+}
@@ -0,0 +1,97 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaQuery;
+import lf.sol.genericrepository.benchmarks.BenchmarkDatabase;
+import lf.sol.genericrepository.benchmarks.model.Customer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of building the generic conditions and rendering them into criteria queries, without the database
+ * The benchmarks are in the package of the condition to render it through the same protected methods used by the
+ * repository
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenericConditionBenchmark {
+
+    private static final GenericOrder[] ORDERS = GenericOrder.getOrders("-age", "name");
+
+    @Param({"10", "1000"})
+    private int inSize;
+
+    private BenchmarkDatabase database;
+    private EntityManager entityManager;
+    private GenericRepository<Customer, Long> repository;
+    private List<Object> inValues;
+
+    @Setup
+    public void setup(){
+        database = BenchmarkDatabase.empty();
+        entityManager = database.createEntityManager();
+        repository = new GenericRepository<>(Customer.class, entityManager);
+        inValues = new ArrayList<>();
+        for(int i = 0; i < inSize; i++){
+            inValues.add("name" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        entityManager.close();
+        database.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<Customer> equal(){
+        return repository.initCondition().equal("name", "name1").generate(ORDERS);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Customer> in(){
+        return repository.initCondition().in("name", inValues).generate(ORDERS);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Customer> disjunctionLike(){
+        return repository.initCondition().disjunctionLike("name1", "name", "email", "address.city").generate(ORDERS);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Customer> nestedPaths(){
+        return repository.initCondition().equal("address.city", "city1").equal("address.country", "country1")
+                .like("tags.label", "tag").generate(ORDERS);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Customer> andOr(){
+        GenericCondition<Customer> condition = repository.initCondition();
+        return condition.andOr(condition.initSubCondition().equal("name", "name1").greater("age", 30, false),
+                condition.initSubCondition().equal("address.city", "city1").isTrue("active")).generate(ORDERS);
+    }
+
+    @Benchmark
+    public String shapeAndValues(){
+        GenericCondition<Customer> condition = repository.initCondition().equal("name", "name1").in("name", inValues)
+                .equal("address.city", "city1");
+        return condition.shape(ORDERS) + condition.getParameterValues().size();
+    }
+
+    @Benchmark
+    public void validateNestedFields(){
+        repository.validateFields("address.city", "address.country", "tags.label");
+    }
+
+    @Benchmark
+    public GenericOrder[] parseOrders(){
+        return GenericOrder.getOrders("-age", "name", "-address.city", "id");
+    }
+}
@@ -0,0 +1,203 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+import lf.sol.genericrepository.benchmarks.BenchmarkDatabase;
+import lf.sol.genericrepository.benchmarks.model.Customer;
+import lf.sol.genericrepository.exception.NoCountPaginationException;
+import lf.sol.genericrepository.exception.WrongContinuationTokenException;
+import lf.sol.genericrepository.exception.WrongPaginationParamsException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+/**
+ * Check of the query paths of the repository against an in-memory H2 database, comparing their results with the
+ * results of the same queries run directly by the database
+ * It runs with: java -cp benchmarks/target/benchmarks.jar lf.sol.genericrepository.repository.QueryCheck
+ */
+public final class QueryCheck {
+
+    private static final int CUSTOMERS = 200;
+    private static final int NTH = 5;
+
+    private QueryCheck() {
+    }
+
+    public static void main(String[] args) throws NoCountPaginationException, WrongPaginationParamsException, WrongContinuationTokenException {
+        try(BenchmarkDatabase database = BenchmarkDatabase.seeded(CUSTOMERS);
+            EntityManager entityManager = database.createEntityManager()){
+            GenericRepository<Customer, Long> repository = new GenericRepository<>(Customer.class, entityManager);
+            checkNthOrder(repository, entityManager);
+            checkChunkedCount(entityManager);
+            checkChunkedOrder(repository, entityManager);
+            checkCountEviction();
+            checkContinuationTokens(repository, entityManager);
+            checkCachedEntities(entityManager);
+            checkLoadedEntities(repository, entityManager);
+            checkWriteVersions(database);
+        }
+        System.out.println("The query check passed");
+    }
+
+    /**
+     * Method that checks that the first results without condition are in the requested order
+     * @param repository the repository
+     * @param entityManager the entity manager
+     */
+    private static void checkNthOrder(GenericRepository<Customer, Long> repository, EntityManager entityManager){
+        List<Long> expectedIds = entityManager.createQuery("select c.id from Customer c order by c.age desc, c.id desc", Long.class)
+                .setMaxResults(NTH).getResultList();
+        GenericOrder[] orders = GenericOrder.getOrders("-age", "-id");
+        check(ids(repository.getNth(NTH, orders)).equals(expectedIds), "getNth without condition ignores the orders");
+        check(repository.getFirst(orders).getId().equals(expectedIds.getFirst()), "getFirst without condition ignores the orders");
+    }
+
+    /**
+     * Method that checks that the count of a condition split into chunks is cached under the whole condition
+     * @param entityManager the entity manager
+     */
+    private static void checkChunkedCount(EntityManager entityManager){
+        CountCache countCache = CountCache.of(10, Duration.ofMinutes(1));
+        GenericRepository<Customer, Long> cachedRepository = new GenericRepository<>(
+                new GenericRepository<>(Customer.class, null, countCache, null), entityManager);
+        GenericCondition<Customer> condition = cachedRepository.initConditionWithCount()
+                .in("id", LongStream.rangeClosed(1, ConditionClause.IN_LIST_CHUNK_SIZE * 2L).mapToObj(id -> (Object) id).toList());
+        check(condition.splitInList().size() > 1, "the in list is not split");
+        Long count = cachedRepository.total(condition);
+        check(count == CUSTOMERS, "the chunked count is not the sum of the chunks");
+        check(count.equals(countCache.get(Customer.class, "count " + condition.shape(), condition.getParameterValues(),
+                WriteVersions.of(Customer.class))), "the chunked count is not cached under the whole condition");
+    }
+
+    /**
+     * Method that checks that the results of a condition with an in list larger than a chunk are ordered and
+     * paginated by the database
+     * @param repository the repository
+     * @param entityManager the entity manager
+     */
+    private static void checkChunkedOrder(GenericRepository<Customer, Long> repository, EntityManager entityManager)
+            throws NoCountPaginationException, WrongPaginationParamsException {
+        List<Long> expectedIds = entityManager.createQuery("select c.id from Customer c order by c.email desc, c.id", Long.class)
+                .getResultList();
+        GenericOrder[] orders = GenericOrder.getOrders("-email", "id");
+        GenericCondition<Customer> condition = repository.initConditionWithCount()
+                .in("id", LongStream.rangeClosed(1, ConditionClause.IN_LIST_CHUNK_SIZE * 2L).mapToObj(id -> (Object) id).toList());
+        check(ids(repository.getAll(condition, orders)).equals(expectedIds), "the chunked results are not in the order of the database");
+        check(ids(repository.getSome(condition, NTH, NTH, orders).getResults()).equals(expectedIds.subList(NTH, NTH * 2)),
+                "the chunked page is not the page of the database");
+    }
+
+    /**
+     * Method that checks that a full count cache evicts its least recently used counts instead of the new ones
+     */
+    private static void checkCountEviction(){
+        CountCache countCache = CountCache.of(2, Duration.ofMinutes(1));
+        countCache.put(Customer.class, "first", List.of(), 1L, 0);
+        countCache.put(Customer.class, "second", List.of(), 2L, 0);
+        countCache.get(Customer.class, "first", List.of(), 0);
+        countCache.put(Customer.class, "third", List.of(), 3L, 0);
+        check(countCache.get(Customer.class, "third", List.of(), 0) != null, "the full count cache drops the new counts");
+        check(countCache.get(Customer.class, "first", List.of(), 0) != null
+                && countCache.get(Customer.class, "second", List.of(), 0) == null, "the count cache does not evict the least recently used count");
+    }
+
+    /**
+     * Method that checks that the keyset pages follow the order of the database and that a changed token is rejected
+     * @param repository the repository
+     * @param entityManager the entity manager
+     */
+    private static void checkContinuationTokens(GenericRepository<Customer, Long> repository, EntityManager entityManager)
+            throws WrongPaginationParamsException, WrongContinuationTokenException {
+        List<Long> expectedIds = entityManager.createQuery("select c.id from Customer c order by c.name, c.id", Long.class)
+                .setFirstResult(NTH).setMaxResults(NTH).getResultList();
+        GenericOrder[] orders = GenericOrder.getOrders("name");
+        String token = repository.getSomeAfter(null, NTH, orders).getContinuationToken();
+        check(ids(repository.getSomeAfter(token, NTH, orders).getResults()).equals(expectedIds), "the second keyset page is not the next page");
+        char[] changed = token.toCharArray();
+        changed[1] = changed[1] == 'A' ? 'B' : 'A';
+        check(rejects(repository, new String(changed), orders), "a changed continuation token is accepted");
+        check(rejects(repository, token, GenericOrder.getOrders("-name")), "a continuation token is accepted for other orders");
+    }
+
+    /**
+     * Method that checks that a repository with an entity cache returns detached entities on the misses and on the hits
+     * @param entityManager the entity manager
+     */
+    private static void checkCachedEntities(EntityManager entityManager){
+        GenericRepository<Customer, Long> cachedRepository = new GenericRepository<>(
+                new GenericRepository<>(Customer.class, EntityCache.withMaxEntries(10, Duration.ofMinutes(1)), null, null), entityManager);
+        Long id = ids(cachedRepository.getNth(1, GenericOrder.getOrders("id"))).getFirst();
+        entityManager.clear();
+        check(!entityManager.contains(cachedRepository.getById(id)), "a cache miss returns a managed entity");
+        check(!entityManager.contains(cachedRepository.getById(id)), "a cache hit returns a managed entity");
+    }
+
+    /**
+     * Method that checks that the entities of some IDs already loaded in the persistence context are returned as they
+     * are, and that the IDs without entity are skipped
+     * @param repository the repository
+     * @param entityManager the entity manager
+     */
+    private static void checkLoadedEntities(GenericRepository<Customer, Long> repository, EntityManager entityManager){
+        entityManager.clear();
+        Customer loaded = entityManager.find(Customer.class, 1L);
+        Map<Long, Customer> entities = repository.getByIdsAsMap(List.of(1L, 2L, (long) CUSTOMERS * 10));
+        check(entities.get(1L) == loaded, "the entity loaded in the persistence context is not returned");
+        check(entities.containsKey(2L) && entities.size() == 2, "the entities of the IDs are not read once");
+    }
+
+    /**
+     * Method that checks that a write keeps its entity pending until its transaction completes, without using the
+     * entity manager of the write again
+     * @param database the database
+     */
+    private static void checkWriteVersions(BenchmarkDatabase database){
+        try(EntityManager entityManager = database.createEntityManager()){
+            GenericRepository<Customer, Long> repository = new GenericRepository<>(Customer.class, entityManager);
+            entityManager.getTransaction().begin();
+            repository.upsert(new Customer((long) CUSTOMERS + 1, "pending", "pending@mail.com", 20, true, null));
+            check(WriteVersions.of(Customer.class) == WriteVersions.PENDING, "the entity of an open transaction is not pending");
+            entityManager.getTransaction().rollback();
+            check(WriteVersions.of(Customer.class) != WriteVersions.PENDING, "the entity of a completed transaction is still pending");
+        }
+    }
+
+    /**
+     * Method that checks if a continuation token is rejected
+     * @param repository the repository
+     * @param token the continuation token
+     * @param orders the orders of the pagination
+     * @return true if the token is rejected, false otherwise
+     */
+    private static boolean rejects(GenericRepository<Customer, Long> repository, String token, GenericOrder[] orders)
+            throws WrongPaginationParamsException {
+        try{
+            repository.getSomeAfter(token, NTH, orders);
+            return false;
+        }catch(WrongContinuationTokenException e){
+            return true;
+        }
+    }
+
+    /**
+     * Method that gets the IDs of some customers
+     * @param customers the customers
+     * @return the IDs, in the order of the customers
+     */
+    static List<Long> ids(List<Customer> customers){
+        return customers.stream().map(Customer::getId).toList();
+    }
+
+    /**
+     * Method that fails the check if a condition is not met
+     * @param condition the condition
+     * @param message the message of the failure
+     */
+    static void check(boolean condition, String message){
+        if(!condition){
+            throw new IllegalStateException("The query check failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lf.sol.genericrepository.benchmarks.BenchmarkDatabase;
+import lf.sol.genericrepository.benchmarks.model.Address;
+import lf.sol.genericrepository.benchmarks.model.Customer;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Check of the native upserts against an in-memory H2 database, covering the updates of existing rows, the inserts of
+ * new rows and the foreign key columns
+ * The check is in the package of the repository to verify that the native statement is used instead of the merge
+ * It runs with: java -cp benchmarks/target/benchmarks.jar lf.sol.genericrepository.repository.UpsertCheck
+ */
+public final class UpsertCheck {
+
+    private static final int CUSTOMERS = 10;
+    private static final long NEW_ID = 1_000_000L;
+
+    private UpsertCheck() {
+    }
+
+    public static void main(String[] args) {
+        try(BenchmarkDatabase database = BenchmarkDatabase.seeded(CUSTOMERS);
+            BenchmarkDatabase otherDatabase = BenchmarkDatabase.empty()){
+            checkStatements(database, otherDatabase);
+            checkUpserts(database);
+        }
+        System.out.println("The upsert check passed");
+    }
+
+    /**
+     * Method that checks that the entity has a native upsert statement, compiled once for each persistence unit
+     * @param database the database
+     * @param otherDatabase other database, with another persistence unit
+     */
+    private static void checkStatements(BenchmarkDatabase database, BenchmarkDatabase otherDatabase){
+        try(EntityManager entityManager = database.createEntityManager();
+            EntityManager otherEntityManager = otherDatabase.createEntityManager()){
+            EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+            EntityManagerFactory otherEntityManagerFactory = otherEntityManager.getEntityManagerFactory();
+            UpsertStatement upsertStatement = UpsertStatement.of(entityManagerFactory,
+                    entityManagerFactory.getMetamodel().entity(Customer.class));
+            check(upsertStatement != null, "the customer has no native upsert statement");
+            check(upsertStatement == UpsertStatement.of(entityManagerFactory, entityManagerFactory.getMetamodel().entity(Customer.class)),
+                    "the upsert statement is compiled again in the same persistence unit");
+            check(upsertStatement != UpsertStatement.of(otherEntityManagerFactory,
+                    otherEntityManagerFactory.getMetamodel().entity(Customer.class)),
+                    "the upsert statement is shared by two persistence units");
+        }
+    }
+
+    /**
+     * Method that upserts an existing customer, a new customer and a customer without address, and checks their rows
+     * @param database the database
+     */
+    private static void checkUpserts(BenchmarkDatabase database){
+        Customer existing;
+        Address otherAddress;
+        long count;
+        try(EntityManager entityManager = database.createEntityManager()){
+            GenericRepository<Customer, Long> repository = new GenericRepository<>(Customer.class, entityManager);
+            existing = repository.getFirst(GenericOrder.getOrders("id"));
+            Long existingAddressId = existing.getAddress().getId();
+            otherAddress = new GenericRepository<>(Address.class, entityManager).getAll(GenericOrder.getOrders("id")).stream()
+                    .filter(address -> !address.getId().equals(existingAddressId)).findFirst().orElseThrow();
+            count = repository.total();
+        }
+
+        Customer updated = new Customer(existing.getId(), "updated", "updated@mail.com", 99, !existing.isActive(), otherAddress);
+        Customer inserted = new Customer(NEW_ID, "inserted", "inserted@mail.com", 30, true, otherAddress);
+        Customer withoutAddress = new Customer(NEW_ID + 1, "without address", "without@mail.com", 40, false, null);
+        try(EntityManager entityManager = database.createEntityManager()){
+            GenericRepository<Customer, Long> repository = new GenericRepository<>(Customer.class, entityManager);
+            entityManager.getTransaction().begin();
+            repository.upsertAll(List.of(updated, inserted));
+            repository.upsert(withoutAddress);
+            entityManager.getTransaction().commit();
+        }
+
+        try(EntityManager entityManager = database.createEntityManager()){
+            GenericRepository<Customer, Long> repository = new GenericRepository<>(Customer.class, entityManager);
+            check(repository.total() == count + 2, "the new customers were not inserted once");
+            checkRow(repository.getById(updated.getId()), updated, otherAddress.getId());
+            checkRow(repository.getById(inserted.getId()), inserted, otherAddress.getId());
+            checkRow(repository.getById(withoutAddress.getId()), withoutAddress, null);
+        }
+    }
+
+    /**
+     * Method that checks the row of an upserted customer
+     * @param row the customer read from the database
+     * @param expected the upserted customer
+     * @param addressId the ID of the address of the customer, or null if it has no address
+     */
+    private static void checkRow(Customer row, Customer expected, Long addressId){
+        check(row != null, "the customer " + expected.getId() + " was not found");
+        check(row.getName().equals(expected.getName()) && row.getEmail().equals(expected.getEmail())
+                && row.getAge().equals(expected.getAge()) && row.isActive() == expected.isActive(),
+                "the fields of the customer " + expected.getId() + " were not written");
+        check(Objects.equals(row.getAddress() != null ? row.getAddress().getId() : null, addressId),
+                "the foreign key of the customer " + expected.getId() + " was not written");
+    }
+
+    /**
+     * Method that fails the check if a condition is not met
+     * @param condition the condition
+     * @param message the message of the failure
+     */
+    private static void check(boolean condition, String message){
+        if(!condition){
+            throw new IllegalStateException("The upsert check failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package lf.sol.genericrepository.exception;
+
+public class WrongContinuationTokenException extends Exception{
+
+    public WrongContinuationTokenException(String message) {
+        super(message);
+    }
+
+    public WrongContinuationTokenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,317 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.Tuple;
+import lf.sol.genericrepository.repository.ConditionClause.Operator;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates of an entity (sums, averages, minimums, maximums and counts) computed by the database, optionally by
+ * groups of fields (nested fields separated by dots), with filters and orders over the aggregates
+ * Each aggregate is referenced by its alias, the name of the function followed by the field in parentheses, for
+ * example "sum(age)", "countDistinct(address.city)" or "count(*)", which is also its key in the maps and tuples
+ * The aggregations are immutable, each method returns a new aggregation
+ * @param <R> the type of the rows
+ */
+public final class Aggregation<R> {
+
+    /**
+     * The aggregate functions
+     */
+    enum Function {
+        SUM("sum"), AVG("avg"), MIN("min"), MAX("max"), COUNT("count"), COUNT_DISTINCT("countDistinct");
+
+        private final String alias;
+
+        Function(String alias) {
+            this.alias = alias;
+        }
+    }
+
+    private static final String ALL_FIELDS = "*";
+    private static final Pattern ALIAS_PATTERN = Pattern.compile("(\\w+)\\((.+)\\)");
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Projection.Kind kind;
+    @Getter(AccessLevel.PACKAGE)
+    private final Class<?> rowClass;
+    @Getter(AccessLevel.PACKAGE)
+    private final List<String> groupFields;
+    @Getter(AccessLevel.PACKAGE)
+    private final List<Aggregate> aggregates;
+    @Getter(AccessLevel.PACKAGE)
+    private final List<Having> havings;
+
+    private Aggregation(Projection.Kind kind, Class<?> rowClass, List<String> groupFields, List<Aggregate> aggregates,
+                        List<Having> havings) {
+        this.kind = kind;
+        this.rowClass = rowClass;
+        this.groupFields = groupFields;
+        this.aggregates = aggregates;
+        this.havings = havings;
+    }
+
+    /**
+     * Method that generates an aggregation into records, or into classes with a constructor of the group fields
+     * followed by the aggregates, in the order they are added
+     * The counts are longs, the sums are longs for the integer fields and doubles for the floating point fields,
+     * the averages are doubles, and the minimums and maximums have the type of the field
+     * @param rowClass the record class
+     * @param groupFields the entity fields to group by, none to aggregate all the results into one row
+     * @return the aggregation
+     */
+    public static <R> Aggregation<R> of(Class<R> rowClass, String... groupFields){
+        return new Aggregation<>(Projection.Kind.CONSTRUCTOR, rowClass, List.of(groupFields), List.of(), List.of());
+    }
+
+    /**
+     * Method that generates an aggregation into tuples, where each value has the group field or the alias of the
+     * aggregate as alias
+     * @param groupFields the entity fields to group by, none to aggregate all the results into one row
+     * @return the aggregation
+     */
+    public static Aggregation<Tuple> tuple(String... groupFields){
+        return new Aggregation<>(Projection.Kind.TUPLE, Tuple.class, List.of(groupFields), List.of(), List.of());
+    }
+
+    /**
+     * Method that generates an aggregation into maps, where each value has the group field or the alias of the
+     * aggregate as key
+     * The maps keep the order of the group fields and the aggregates
+     * @param groupFields the entity fields to group by, none to aggregate all the results into one row
+     * @return the aggregation
+     */
+    public static Aggregation<Map<String, Object>> map(String... groupFields){
+        return new Aggregation<>(Projection.Kind.MAP, Tuple.class, List.of(groupFields), List.of(), List.of());
+    }
+
+    /**
+     * Method that adds the sum of a field
+     * @param field the entity field
+     * @return the new aggregation
+     */
+    public Aggregation<R> sum(String field){
+        return with(new Aggregate(Function.SUM, field));
+    }
+
+    /**
+     * Method that adds the average of a field
+     * @param field the entity field
+     * @return the new aggregation
+     */
+    public Aggregation<R> avg(String field){
+        return with(new Aggregate(Function.AVG, field));
+    }
+
+    /**
+     * Method that adds the minimum of a field
+     * @param field the entity field
+     * @return the new aggregation
+     */
+    public Aggregation<R> min(String field){
+        return with(new Aggregate(Function.MIN, field));
+    }
+
+    /**
+     * Method that adds the maximum of a field
+     * @param field the entity field
+     * @return the new aggregation
+     */
+    public Aggregation<R> max(String field){
+        return with(new Aggregate(Function.MAX, field));
+    }
+
+    /**
+     * Method that adds the number of results, with the alias "count(*)"
+     * @return the new aggregation
+     */
+    public Aggregation<R> count(){
+        return with(new Aggregate(Function.COUNT, ALL_FIELDS));
+    }
+
+    /**
+     * Method that adds the number of distinct values of a field
+     * @param field the entity field
+     * @return the new aggregation
+     */
+    public Aggregation<R> countDistinct(String field){
+        return with(new Aggregate(Function.COUNT_DISTINCT, field));
+    }
+
+    /**
+     * Method that keeps the groups where an aggregate is equal to a value
+     * @param aggregate the alias of the aggregate, that doesn't need to be selected, for example "sum(age)"
+     * @param value the value to compare
+     * @return the new aggregation
+     */
+    public Aggregation<R> havingEqual(String aggregate, Number value){
+        return with(new Having(Aggregate.parse(aggregate), Operator.EQUAL, new Number[]{value}));
+    }
+
+    /**
+     * Method that keeps the groups where an aggregate is greater than a value
+     * @param aggregate the alias of the aggregate, that doesn't need to be selected, for example "sum(age)"
+     * @param value the value to compare
+     * @param orEqual flag that indicates if it's greater or equal
+     * @return the new aggregation
+     */
+    public Aggregation<R> havingGreater(String aggregate, Number value, boolean orEqual){
+        return with(new Having(Aggregate.parse(aggregate), orEqual ? Operator.GREATER_OR_EQUAL : Operator.GREATER, new Number[]{value}));
+    }
+
+    /**
+     * Method that keeps the groups where an aggregate is less than a value
+     * @param aggregate the alias of the aggregate, that doesn't need to be selected, for example "sum(age)"
+     * @param value the value to compare
+     * @param orEqual flag that indicates if it's less or equal
+     * @return the new aggregation
+     */
+    public Aggregation<R> havingLess(String aggregate, Number value, boolean orEqual){
+        return with(new Having(Aggregate.parse(aggregate), orEqual ? Operator.LESS_OR_EQUAL : Operator.LESS, new Number[]{value}));
+    }
+
+    /**
+     * Method that keeps the groups where an aggregate is between two values
+     * @param aggregate the alias of the aggregate, that doesn't need to be selected, for example "sum(age)"
+     * @param value1 number one
+     * @param value2 number two
+     * @return the new aggregation
+     */
+    public Aggregation<R> havingBetween(String aggregate, Number value1, Number value2){
+        return with(new Having(Aggregate.parse(aggregate), Operator.BETWEEN, new Number[]{value1, value2}));
+    }
+
+    /**
+     * Method that generates the shape of the aggregation, which identifies its selection, groups and filters in the
+     * generated queries, without the values of the filters
+     * @return the shape of the aggregation
+     */
+    String shape(){
+        return kind + "(" + rowClass.getName() + ":" + String.join(",", groupFields) + ":"
+                + aggregates.stream().map(Aggregate::alias).collect(Collectors.joining(",")) + ":"
+                + havings.stream().map(Having::shape).collect(Collectors.joining(",")) + ")";
+    }
+
+    /**
+     * Method that gets the values of the filters of the aggregates, in the order of their parameters
+     * @return the values of the filters
+     */
+    List<Object> getHavingValues(){
+        List<Object> values = new ArrayList<>();
+        havings.forEach(having -> Collections.addAll(values, having.values()));
+        return values;
+    }
+
+    /**
+     * Method that converts the rows read by the query into the rows of the aggregation
+     * @param rows the rows read by the query
+     * @return the rows of the aggregation
+     */
+    @SuppressWarnings("unchecked")
+    List<R> toResults(List<?> rows){
+        if(kind != Projection.Kind.MAP){
+            return (List<R>) rows;
+        }
+        return (List<R>) rows.stream().map(row -> Projection.toMap((Tuple) row)).toList();
+    }
+
+    /**
+     * Method that generates a new aggregation with one more aggregate
+     * @param aggregate the aggregate
+     * @return the new aggregation
+     */
+    private Aggregation<R> with(Aggregate aggregate){
+        List<Aggregate> allAggregates = new ArrayList<>(aggregates);
+        allAggregates.add(aggregate);
+        return new Aggregation<>(kind, rowClass, groupFields, List.copyOf(allAggregates), havings);
+    }
+
+    /**
+     * Method that generates a new aggregation with one more filter of the aggregates
+     * @param having the filter
+     * @return the new aggregation
+     */
+    private Aggregation<R> with(Having having){
+        for(Number value : having.values()){
+            if(value == null){
+                throw new IllegalArgumentException("The values of the filters of the aggregates can't be null");
+            }
+        }
+        List<Having> allHavings = new ArrayList<>(havings);
+        allHavings.add(having);
+        return new Aggregation<>(kind, rowClass, groupFields, aggregates, List.copyOf(allHavings));
+    }
+
+    /**
+     * Aggregate function over a field
+     * @param function the aggregate function
+     * @param field the entity field, or "*" for the count of results
+     */
+    record Aggregate(Function function, String field) {
+
+        /**
+         * Method that gets the alias of the aggregate
+         * @return the alias, for example "sum(age)"
+         */
+        String alias(){
+            return function.alias + "(" + field + ")";
+        }
+
+        /**
+         * Method that parses the alias of an aggregate
+         * @param alias the alias, for example "sum(age)"
+         * @return the aggregate, or null if the alias is not an aggregate
+         */
+        static Aggregate tryParse(String alias){
+            Matcher matcher = ALIAS_PATTERN.matcher(alias);
+            if(!matcher.matches()){
+                return null;
+            }
+            return Arrays.stream(Function.values()).filter(function -> function.alias.equals(matcher.group(1)))
+                    .filter(function -> function == Function.COUNT ? ALL_FIELDS.equals(matcher.group(2)) : !ALL_FIELDS.equals(matcher.group(2)))
+                    .findFirst().map(function -> new Aggregate(function, matcher.group(2))).orElse(null);
+        }
+
+        /**
+         * Method that parses the alias of an aggregate
+         * @param alias the alias, for example "sum(age)"
+         * @return the aggregate
+         * @throws IllegalArgumentException if the alias is not an aggregate
+         */
+        static Aggregate parse(String alias){
+            Aggregate aggregate = tryParse(alias);
+            if(aggregate == null){
+                throw new IllegalArgumentException("The alias " + alias + " is not an aggregate");
+            }
+            return aggregate;
+        }
+    }
+
+    /**
+     * Filter of the groups by an aggregate
+     * @param aggregate the aggregate
+     * @param operator the comparison operator
+     * @param values the values to compare
+     */
+    record Having(Aggregate aggregate, Operator operator, Number[] values) {
+
+        /**
+         * Method that gets the shape of the filter, with the types of the values since they are the types of the
+         * parameters
+         * @return the shape of the filter
+         */
+        String shape(){
+            return operator + "(" + aggregate.alias() + "#" + Arrays.stream(values).map(value -> value.getClass().getSimpleName())
+                    .collect(Collectors.joining(",")) + ")";
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import lf.sol.genericrepository.model.GenericEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+public class AsyncGenericRepository<T extends GenericEntity, Object> implements IAsyncGenericRepository<T, Object> {
+
+    private static final ExecutorService CALL_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private final GenericRepository<T, Object> repository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Semaphore permits;
+
+    /**
+     * Constructor of an asynchronous repository, that shares the query templates, caches, estimator and metrics of
+     * a repository
+     * @param repository the repository
+     * @param entityManagerFactory the factory of the entity managers of the calls
+     * @param maxConcurrency the maximum number of calls running at the same time, that should not be greater than
+     *                       the size of the connection pool
+     * @throws IllegalArgumentException if the maximum number of calls is not greater than zero
+     */
+    public AsyncGenericRepository(GenericRepository<T, Object> repository, EntityManagerFactory entityManagerFactory, int maxConcurrency) {
+        if(maxConcurrency <= 0){
+            throw new IllegalArgumentException("The maximum number of concurrent calls must be greater than zero");
+        }
+        this.repository = repository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public GenericCondition<T> initCondition() {
+        return initCondition(false);
+    }
+
+    @Override
+    public GenericCondition<T> initConditionWithCount() {
+        return initCondition(true);
+    }
+
+    @Override
+    public GenericCondition<T> initCondition(ConditionSpec<T> conditionSpec) {
+        return initCondition(false).and(conditionSpec);
+    }
+
+    @Override
+    public GenericCondition<T> initConditionWithCount(ConditionSpec<T> conditionSpec) {
+        return initCondition(true).and(conditionSpec);
+    }
+
+    @Override
+    public CompletableFuture<T> getById(Object id) {
+        return submit(callRepository -> callRepository.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(GenericOrder... genericOrders) {
+        return getAll(initCondition(), genericOrders);
+    }
+
+    @Override
+    public CompletableFuture<List<T>> getAll(GenericCondition<T> genericCondition, GenericOrder... genericOrders) {
+        return submit(callRepository -> callRepository.getAll(genericCondition, genericOrders));
+    }
+
+    @Override
+    public CompletableFuture<Pagination<T>> getSome(int offset, int limit, GenericOrder... genericOrders) {
+        return getSome(initConditionWithCount(), offset, limit, genericOrders);
+    }
+
+    @Override
+    public CompletableFuture<Pagination<T>> getSome(GenericCondition<T> genericCondition, int offset, int limit, GenericOrder... genericOrders) {
+        return getSome(genericCondition, offset, limit, CountMode.SEQUENTIAL, genericOrders);
+    }
+
+    @Override
+    public CompletableFuture<Pagination<T>> getSome(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) {
+        if(countMode == CountMode.LAZY){
+            throw new IllegalArgumentException("The lazy count is not supported in asynchronous calls");
+        }
+        return submit(callRepository -> callRepository.getSome(genericCondition, offset, limit, countMode, genericOrders));
+    }
+
+    @Override
+    public CompletableFuture<Long> total() {
+        return total(initConditionWithCount());
+    }
+
+    @Override
+    public CompletableFuture<Long> total(GenericCondition<T> genericCondition) {
+        return submit(callRepository -> callRepository.total(genericCondition));
+    }
+
+    @Override
+    public CompletableFuture<T> getFirst(GenericOrder... genericOrders) {
+        return getFirst(initCondition(), genericOrders);
+    }
+
+    @Override
+    public CompletableFuture<T> getFirst(GenericCondition<T> genericCondition, GenericOrder... genericOrders) {
+        return submit(callRepository -> callRepository.getFirst(genericCondition, genericOrders));
+    }
+
+    @Override
+    public <A, R> CompletableFuture<R> scan(GenericCondition<T> genericCondition, int partitions, int chunkSize, Collector<? super T, A, R> collector) {
+        EntityType<T> entityType = entityManagerFactory.getMetamodel().entity(repository.getGenericEntityClass());
+        return scan(genericCondition, entityType.getId(entityType.getIdType().getJavaType()).getName(), partitions, chunkSize, collector);
+    }
+
+    @Override
+    public <A, R> CompletableFuture<R> scan(GenericCondition<T> genericCondition, String keyField, int partitions, int chunkSize, Collector<? super T, A, R> collector) {
+        if(partitions <= 0 || chunkSize <= 0){
+            throw new IllegalArgumentException("The number of partitions and the chunk size must be greater than zero");
+        }
+        genericCondition.validatePartitionKey(keyField);
+
+        // the condition is copied, so that it can be changed after the call
+        GenericCondition<T> scanCondition = genericCondition.copy();
+        List<CompletableFuture<A>> partitionFutures = new CopyOnWriteArrayList<>();
+        CompletableFuture<R> scanFuture = submit(callRepository -> callRepository.getRange(scanCondition, keyField))
+                .thenCompose(range -> {
+                    if(range[0] == null){
+                        return CompletableFuture.completedFuture(collector.finisher().apply(collector.supplier().get()));
+                    }
+                    for(GenericCondition<T> rangeCondition : scanCondition.partition(keyField, (Number) range[0], (Number) range[1], partitions)){
+                        partitionFutures.add(submit(callRepository -> {
+                            A container = collector.supplier().get();
+                            callRepository.scan(rangeCondition, keyField, chunkSize,
+                                    chunk -> chunk.forEach(result -> collector.accumulator().accept(container, result)));
+                            return container;
+                        }));
+                    }
+                    // a failed range cancels the other ranges
+                    partitionFutures.forEach(partitionFuture -> partitionFuture.whenComplete((container, e) -> {
+                        if(e != null){
+                            partitionFutures.forEach(otherFuture -> otherFuture.cancel(true));
+                        }
+                    }));
+                    return CompletableFuture.allOf(partitionFutures.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                        // the containers are combined in the order of the ranges, whatever the order they ended
+                        A container = partitionFutures.getFirst().join();
+                        for(CompletableFuture<A> partitionFuture : partitionFutures.subList(1, partitionFutures.size())){
+                            container = collector.combiner().apply(container, partitionFuture.join());
+                        }
+                        return collector.finisher().apply(container);
+                    });
+                });
+
+        // cancelling the scan cancels the ranges
+        CompletableFuture<R> resultFuture = new CompletableFuture<>(){
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if(cancelled){
+                    scanFuture.cancel(mayInterruptIfRunning);
+                    new ArrayList<>(partitionFutures).forEach(partitionFuture -> partitionFuture.cancel(mayInterruptIfRunning));
+                }
+                return cancelled;
+            }
+        };
+        scanFuture.whenComplete((result, e) -> {
+            if(e != null){
+                resultFuture.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }else{
+                resultFuture.complete(result);
+            }
+        });
+        return resultFuture;
+    }
+
+    @Override
+    public CompletableFuture<Void> scan(GenericCondition<T> genericCondition, String keyField, int partitions, int chunkSize, Consumer<? super T> consumer) {
+        return scan(genericCondition, keyField, partitions, chunkSize, Collector.<T, Consumer<? super T>, Void>of(() -> consumer,
+                Consumer::accept, (consumer1, consumer2) -> consumer1, consumer1 -> null, Collector.Characteristics.UNORDERED));
+    }
+
+    /**
+     * Method that submits a call to run in a virtual thread, with its own entity manager
+     * @param repositoryCall the call
+     * @return the future of the result of the call
+     */
+    private <R> CompletableFuture<R> submit(RepositoryCall<T, Object, R> repositoryCall){
+        CallFuture<R> callFuture = new CallFuture<>();
+        CALL_EXECUTOR.execute(() -> run(callFuture, repositoryCall));
+        return callFuture;
+    }
+
+    /**
+     * Method that runs a call, waiting for a permit and closing its entity manager at the end
+     * The future is completed only after the entity manager is closed and the permit is released, because the
+     * dependent stages of the future can run in this thread and call the repository again
+     * @param callFuture the future of the call
+     * @param repositoryCall the call
+     */
+    private <R> void run(CallFuture<R> callFuture, RepositoryCall<T, Object, R> repositoryCall){
+        callFuture.worker = Thread.currentThread();
+        R result = null;
+        Throwable failure = null;
+        try{
+            if(callFuture.isDone()){
+                return;
+            }
+            permits.acquire();
+            try(EntityManager entityManager = entityManagerFactory.createEntityManager()){
+                callFuture.entityManager = entityManager;
+                // the call could be cancelled before its entity manager was known
+                if(!callFuture.isDone()){
+                    result = repositoryCall.call(new GenericRepository<>(repository, entityManager));
+                }
+            }finally{
+                callFuture.entityManager = null;
+                permits.release();
+            }
+        }catch(Throwable e){
+            failure = e;
+        }finally{
+            callFuture.worker = null;
+        }
+
+        if(failure != null){
+            callFuture.completeExceptionally(failure);
+        }else{
+            callFuture.complete(result);
+        }
+    }
+
+    /**
+     * Method that initializes a generic condition related to a specific entity, from the factory of the entity
+     * managers
+     * @param doCount a flag that indicates if the count condition is to initialize in parallel
+     * @return the generic condition
+     */
+    private GenericCondition<T> initCondition(boolean doCount){
+        return new GenericCondition<>(entityManagerFactory.getMetamodel().entity(repository.getGenericEntityClass()),
+                entityManagerFactory.getCriteriaBuilder(), doCount);
+    }
+
+    /**
+     * Call of a repository bound to the entity manager of the call
+     */
+    @FunctionalInterface
+    private interface RepositoryCall<T extends GenericEntity, Object, R> {
+
+        /**
+         * Method that calls the repository
+         * @param repository the repository
+         * @return the result of the call
+         * @throws Exception if the call fails
+         */
+        R call(GenericRepository<T, Object> repository) throws Exception;
+    }
+
+    /**
+     * Future of a call, that interrupts the thread of the call and cancels its running query when cancelled
+     */
+    private static final class CallFuture<R> extends CompletableFuture<R> {
+
+        private volatile Thread worker;
+        private volatile EntityManager entityManager;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if(cancelled){
+                EntityManager runningEntityManager = entityManager;
+                if(runningEntityManager != null){
+                    GenericRepository.cancelRunningQuery(runningEntityManager);
+                }
+                Thread runningWorker = worker;
+                if(runningWorker != null){
+                    runningWorker.interrupt();
+                }
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package lf.sol.genericrepository.repository;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+public class BatchReport {
+
+    private final int batchSize;
+    private final List<Integer> batchEntities;
+    private final List<Duration> batchDurations;
+
+    protected BatchReport(int batchSize) {
+        this.batchSize = batchSize;
+        this.batchEntities = new ArrayList<>();
+        this.batchDurations = new ArrayList<>();
+    }
+
+    /**
+     * Method that registers a flushed batch
+     * @param entities the number of entities of the batch
+     * @param duration the time spent saving and flushing the batch
+     */
+    protected void addBatch(int entities, Duration duration) {
+        batchEntities.add(entities);
+        batchDurations.add(duration);
+    }
+
+    /**
+     * Method that gets the number of entities of each batch
+     * @return the number of entities of each batch
+     */
+    public List<Integer> getBatchEntities() {
+        return Collections.unmodifiableList(batchEntities);
+    }
+
+    /**
+     * Method that gets the time spent in each batch
+     * @return the time spent in each batch
+     */
+    public List<Duration> getBatchDurations() {
+        return Collections.unmodifiableList(batchDurations);
+    }
+
+    /**
+     * Method that gets the total number of entities saved
+     * @return the total number of entities
+     */
+    public int getTotalEntities() {
+        return batchEntities.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Method that gets the total time spent saving the entities
+     * @return the total time
+     */
+    public Duration getTotalDuration() {
+        return batchDurations.stream().reduce(Duration.ZERO, Duration::plus);
+    }
+}
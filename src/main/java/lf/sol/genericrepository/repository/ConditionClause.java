@@ -0,0 +1,239 @@
+package lf.sol.genericrepository.repository;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Predicate recorded by a generic condition, that is only rendered into a criteria query when the condition is
+ * executed
+ * The values of the predicate are bound through query parameters, so the queries with the same shape are equal
+ */
+@Getter(AccessLevel.PACKAGE)
+final class ConditionClause {
+
+    /**
+     * The operators of the predicates
+     */
+    enum Operator {
+        EQUAL, NOT_EQUAL, IS_TRUE, IS_FALSE, IS_NULL, IS_NOT_NULL, GREATER, GREATER_OR_EQUAL, LESS, LESS_OR_EQUAL,
+        BETWEEN, IN, LIKE, DISJUNCTION_LIKE, OR
+    }
+
+    private static final String LIKE_SEPARATOR = "%";
+    static final int IN_LIST_CHUNK_SIZE = 1000;
+    private final Operator operator;
+    private final String[] fields;
+    private final Object[] values;
+    private final List<List<ConditionClause>> groups;
+
+    private ConditionClause(Operator operator, String[] fields, Object[] values, List<List<ConditionClause>> groups) {
+        this.operator = operator;
+        this.fields = fields;
+        this.values = values;
+        this.groups = groups;
+    }
+
+    /**
+     * Method that creates a predicate over one or more fields
+     * @param operator the operator of the predicate
+     * @param fields the entity fields
+     * @param values the values to compare
+     * @return the predicate
+     */
+    static ConditionClause of(Operator operator, String[] fields, Object... values) {
+        return new ConditionClause(operator, fields, values, List.of());
+    }
+
+    /**
+     * Method that creates a predicate over a field
+     * @param operator the operator of the predicate
+     * @param field the entity field
+     * @param values the values to compare
+     * @return the predicate
+     */
+    static ConditionClause of(Operator operator, String field, Object... values) {
+        return of(operator, new String[]{field}, values);
+    }
+
+    /**
+     * Method that creates a predicate that checks if a field is equal to a value, or is null if the value is null
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the predicate
+     */
+    static ConditionClause equal(String field, Object value) {
+        return value == null ? of(Operator.IS_NULL, field) : of(Operator.EQUAL, field, value);
+    }
+
+    /**
+     * Method that creates a predicate that checks if a field is not equal to a value, or is not null if the value
+     * is null
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the predicate
+     */
+    static ConditionClause notEqual(String field, Object value) {
+        return value == null ? of(Operator.IS_NOT_NULL, field) : of(Operator.NOT_EQUAL, field, value);
+    }
+
+    /**
+     * Method that creates a predicate that checks if a field is in a list of values, copying the list so that it
+     * can't be changed after
+     * @param field the entity field
+     * @param values the list of values
+     * @return the predicate
+     */
+    static ConditionClause in(String field, Collection<?> values) {
+        return of(Operator.IN, field, Collections.unmodifiableList(new ArrayList<>(values)));
+    }
+
+    /**
+     * Method that creates a predicate that checks if a field contains a value
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the predicate
+     */
+    static ConditionClause like(String field, Object value) {
+        return of(Operator.LIKE, field, LIKE_SEPARATOR + value + LIKE_SEPARATOR);
+    }
+
+    /**
+     * Method that creates a predicate that checks if some field contains a value
+     * @param value the value to compare
+     * @param fields the entity fields
+     * @return the predicate
+     */
+    static ConditionClause disjunctionLike(Object value, String... fields) {
+        return of(Operator.DISJUNCTION_LIKE, fields.clone(), LIKE_SEPARATOR + value + LIKE_SEPARATOR);
+    }
+
+    /**
+     * Method that creates an OR predicate between groups of predicates joined with AND
+     * @param groups the groups of predicates
+     * @return the predicate
+     */
+    static ConditionClause or(List<List<ConditionClause>> groups) {
+        return new ConditionClause(Operator.OR, new String[0], new Object[0], List.copyOf(groups));
+    }
+
+    /**
+     * Method that appends the shape of the predicate (operator, fields and cardinality of the in lists) to a key,
+     * without its values
+     * @param shape the key to append the shape
+     */
+    void appendShape(StringBuilder shape) {
+        shape.append(operator).append('(').append(String.join(",", fields));
+        if(operator == Operator.IN){
+            shape.append('#').append(cardinalityBucket(((Collection<?>) values[0]).size()));
+        }
+        for(List<ConditionClause> group : groups){
+            shape.append('{');
+            group.forEach(clause -> clause.appendShape(shape));
+            shape.append('}');
+        }
+        shape.append(')');
+    }
+
+    /**
+     * Method that appends a readable description of the predicate (fields, operator and placeholders of the values)
+     * to a text, without its values
+     * @param description the text to append the description
+     */
+    void appendRedacted(StringBuilder description) {
+        if(operator == Operator.OR){
+            description.append('(');
+            for(int i = 0; i < groups.size(); i++){
+                description.append(i == 0 ? "(" : " or (");
+                appendRedacted(description, groups.get(i));
+                description.append(')');
+            }
+            description.append(')');
+            return;
+        }
+        description.append(String.join(",", fields)).append(' ').append(operator);
+        if(operator == Operator.IN){
+            description.append(" [").append(((Collection<?>) values[0]).size()).append(" values]");
+            return;
+        }
+        for(int i = 0; i < values.length; i++){
+            description.append(" ?");
+        }
+    }
+
+    /**
+     * Method that appends a readable description of predicates joined with AND to a text, without their values
+     * @param description the text to append the description
+     * @param clauses the predicates
+     */
+    static void appendRedacted(StringBuilder description, List<ConditionClause> clauses) {
+        for(int i = 0; i < clauses.size(); i++){
+            if(i > 0){
+                description.append(" and ");
+            }
+            clauses.get(i).appendRedacted(description);
+        }
+    }
+
+    /**
+     * Method that appends the values of the predicate to a list, in the same order of its query parameters
+     * @param parameterValues the list to append the values
+     */
+    void appendValues(List<Object> parameterValues) {
+        if(operator == Operator.IN){
+            if(!((Collection<?>) values[0]).isEmpty()){
+                parameterValues.add(pad((List<?>) values[0]));
+            }
+            return;
+        }
+        Collections.addAll(parameterValues, values);
+        groups.forEach(group -> group.forEach(clause -> clause.appendValues(parameterValues)));
+    }
+
+    /**
+     * Method that gets all the fields of the predicate, including the fields of the grouped predicates
+     * @return the fields of the predicate
+     */
+    Stream<String> allFields() {
+        return Stream.concat(Arrays.stream(fields),
+                groups.stream().flatMap(List::stream).flatMap(ConditionClause::allFields));
+    }
+
+    /**
+     * Method that pads an in list up to the next power of two (or the chunk size), repeating its last value, so that
+     * the lists of similar sizes are expanded into the same statement by the provider
+     * @param values the values of the in list
+     * @return the padded values, or the same values if they don't need padding
+     */
+    static List<?> pad(List<?> values) {
+        int size = values.size();
+        if(size > IN_LIST_CHUNK_SIZE){
+            return values;
+        }
+        int paddedSize = Math.min(cardinalityBucket(size), IN_LIST_CHUNK_SIZE);
+        if(paddedSize == size){
+            return values;
+        }
+        List<Object> paddedValues = new ArrayList<>(paddedSize);
+        paddedValues.addAll(values);
+        while(paddedValues.size() < paddedSize){
+            paddedValues.add(values.getLast());
+        }
+        return paddedValues;
+    }
+
+    /**
+     * Method that gets the bucket of the cardinality of an in list, which is the next power of two
+     * @param size the size of the list
+     * @return the bucket of the cardinality
+     */
+    static int cardinalityBucket(int size) {
+        return size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+    }
+}
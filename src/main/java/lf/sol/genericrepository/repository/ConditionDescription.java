@@ -0,0 +1,15 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.List;
+
+/**
+ * Stable and hashable description of a generic condition
+ * The predicates are described by their shape (operators, fields and cardinality of the in lists) and their values
+ * in the order of the parameters, so two conditions built with the same calls have equal descriptions
+ * @param entityClass the class of the entity
+ * @param shape the shape of the predicates
+ * @param parameterValues the values of the predicates
+ * @param fetches the associations to fetch
+ */
+public record ConditionDescription(Class<?> entityClass, String shape, List<Object> parameterValues, List<String> fetches) {
+}
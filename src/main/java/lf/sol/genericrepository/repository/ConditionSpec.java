@@ -0,0 +1,278 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.metamodel.EntityType;
+import lf.sol.genericrepository.model.GenericEntity;
+import lf.sol.genericrepository.repository.ConditionClause.Operator;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Immutable specification of a condition of an entity, that is not bound to any entity manager
+ * Each method returns a new specification, so a specification can be built once, kept in a constant and shared
+ * between threads and requests
+ * The specification is rendered into the queries of each call (select, count, projection, delete or update) through
+ * the generic conditions initialized with it, reusing the same cached queries of the generic conditions
+ */
+public final class ConditionSpec<T extends GenericEntity> {
+
+    @Getter
+    private final Class<T> entityClass;
+    private final List<ConditionClause> clauses;
+    private final List<String> fetches;
+
+    private ConditionSpec(Class<T> entityClass, List<ConditionClause> clauses, List<String> fetches) {
+        this.entityClass = entityClass;
+        this.clauses = clauses;
+        this.fetches = fetches;
+    }
+
+    /**
+     * Method that generates an empty specification of an entity, that matches all its results
+     * @param entityClass the class of the entity
+     * @return the condition specification
+     */
+    public static <T extends GenericEntity> ConditionSpec<T> of(Class<T> entityClass){
+        return new ConditionSpec<>(entityClass, List.of(), List.of());
+    }
+
+    /**
+     * Method that checks if an entity field is equal to a value
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> equal(String field, Object value){
+        return with(ConditionClause.equal(field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is not equal to a value
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> notEqual(String field, Object value){
+        return with(ConditionClause.notEqual(field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is true
+     * @param field the entity field
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> isTrue(String field){
+        return with(ConditionClause.of(Operator.IS_TRUE, field));
+    }
+
+    /**
+     * Method that checks if an entity field is false
+     * @param field the entity field
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> isFalse(String field){
+        return with(ConditionClause.of(Operator.IS_FALSE, field));
+    }
+
+    /**
+     * Method that checks if an entity field is null
+     * @param field the entity field
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> isNull(String field){
+        return with(ConditionClause.of(Operator.IS_NULL, field));
+    }
+
+    /**
+     * Method that checks if an entity field is not null
+     * @param field the entity field
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> isNotNull(String field){
+        return with(ConditionClause.of(Operator.IS_NOT_NULL, field));
+    }
+
+    /**
+     * Method that checks if an entity field is greater than another value (string)
+     * @param field the entity field
+     * @param value the value to compare (string)
+     * @param orEqual flag that indicates if it's greater or equal
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> greater(String field, String value, boolean orEqual){
+        return with(ConditionClause.of(orEqual ? Operator.GREATER_OR_EQUAL : Operator.GREATER, field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is greater than another value (number)
+     * @param field the entity field
+     * @param value the value to compare (number)
+     * @param orEqual flag that indicates if it's greater or equal
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> greater(String field, Number value, boolean orEqual){
+        return with(ConditionClause.of(orEqual ? Operator.GREATER_OR_EQUAL : Operator.GREATER, field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is less than another value (string)
+     * @param field the entity field
+     * @param value the value to compare (string)
+     * @param orEqual flag that indicates if it's less or equal
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> less(String field, String value, boolean orEqual){
+        return with(ConditionClause.of(orEqual ? Operator.LESS_OR_EQUAL : Operator.LESS, field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is less than another value (number)
+     * @param field the entity field
+     * @param value the value to compare (number)
+     * @param orEqual flag that indicates if it's less or equal
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> less(String field, Number value, boolean orEqual){
+        return with(ConditionClause.of(orEqual ? Operator.LESS_OR_EQUAL : Operator.LESS, field, value));
+    }
+
+    /**
+     * Method that checks if an entity field is between another two numbers
+     * @param field the entity field
+     * @param value1 number one
+     * @param value2 number two
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> between(String field, Number value1, Number value2){
+        return with(ConditionClause.of(Operator.BETWEEN, field, value1, value2));
+    }
+
+    /**
+     * Method that checks if an entity field is in a list of values, the list is copied
+     * @param field the entity field
+     * @param values list of values
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> in(String field, Collection<?> values){
+        return with(ConditionClause.in(field, values));
+    }
+
+    /**
+     * Method that checks if an entity field is like to a value
+     * @param field the entity field
+     * @param value the value to compare
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> like(String field, Object value){
+        return with(ConditionClause.like(field, value));
+    }
+
+    /**
+     * Method that checks if some entity fields are like to a value
+     * @param value the value to compare
+     * @param fields the entity fields
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> disjunctionLike(Object value, String... fields){
+        return with(ConditionClause.disjunctionLike(value, fields));
+    }
+
+    /**
+     * Method that adds an OR between specifications, each one with its predicates joined with AND
+     * The associations to fetch of the specifications are not added
+     * @param specs the condition specifications to add with OR
+     * @return the new condition specification
+     */
+    @SafeVarargs
+    public final ConditionSpec<T> andOr(ConditionSpec<T> firstSpec, ConditionSpec<T> secondSpec, ConditionSpec<T>... specs){
+        List<List<ConditionClause>> groups = new ArrayList<>();
+        groups.add(firstSpec.clauses);
+        groups.add(secondSpec.clauses);
+        for(ConditionSpec<T> spec : specs){
+            groups.add(spec.clauses);
+        }
+        return with(ConditionClause.or(groups));
+    }
+
+    /**
+     * Method that adds the predicates and the associations to fetch of another specification, joined with AND
+     * @param spec the other condition specification
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> and(ConditionSpec<T> spec){
+        List<ConditionClause> allClauses = new ArrayList<>(clauses);
+        allClauses.addAll(spec.clauses);
+        Set<String> allFetches = new LinkedHashSet<>(fetches);
+        allFetches.addAll(spec.fetches);
+        return new ConditionSpec<>(entityClass, Collections.unmodifiableList(allClauses), List.copyOf(allFetches));
+    }
+
+    /**
+     * Method that fetches associations (nested associations separated by dots, for example "customer.address") with
+     * the results, instead of loading them lazily for each result
+     * The fetches only apply to the queries of the entities, not to the counts or projections
+     * @param fields the entity associations to fetch
+     * @return the new condition specification
+     */
+    public ConditionSpec<T> fetch(String... fields){
+        Set<String> allFetches = new LinkedHashSet<>(fetches);
+        allFetches.addAll(Arrays.asList(fields));
+        return new ConditionSpec<>(entityClass, clauses, List.copyOf(allFetches));
+    }
+
+    /**
+     * Method that compiles the specification into a predicate of the entities in memory, with the same semantics of
+     * the queries, so that the entities already loaded can be filtered without queries
+     * @return the predicate of the entities
+     */
+    public Predicate<T> toPredicate(){
+        return InMemoryCondition.toPredicate(clauses);
+    }
+
+    /**
+     * Method that gets the predicates of the specification
+     * @return the predicates
+     */
+    List<ConditionClause> getClauses(){
+        return clauses;
+    }
+
+    /**
+     * Method that gets the associations to fetch of the specification
+     * @return the associations to fetch
+     */
+    List<String> getFetches(){
+        return fetches;
+    }
+
+    /**
+     * Method that checks if the specification can be applied to an entity
+     * @param entityType the metamodel of the entity
+     * @throws IllegalArgumentException if the specification is of another entity
+     */
+    void checkEntity(EntityType<?> entityType){
+        if(!entityClass.isAssignableFrom(entityType.getJavaType())){
+            throw new IllegalArgumentException("The condition specification of " + entityClass.getName()
+                    + " can't be applied to " + entityType.getJavaType().getName());
+        }
+    }
+
+    /**
+     * Method that generates a new specification with one more predicate
+     * @param clause the predicate
+     * @return the new condition specification
+     */
+    private ConditionSpec<T> with(ConditionClause clause){
+        List<ConditionClause> allClauses = new ArrayList<>(clauses.size() + 1);
+        allClauses.addAll(clauses);
+        allClauses.add(clause);
+        return new ConditionSpec<>(entityClass, Collections.unmodifiableList(allClauses), fetches);
+    }
+}
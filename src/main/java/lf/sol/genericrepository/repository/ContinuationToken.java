@@ -0,0 +1,298 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.metamodel.ManagedType;
+import lf.sol.genericrepository.exception.WrongContinuationTokenException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Opaque token of a keyset pagination, that holds the values of the order fields in the last row of a page
+ * Each value is written as a type tag and a literal, and it is read back only as the type of its order field in the
+ * metamodel, so a token can't create objects of other classes
+ * The token is versioned and signed with an HMAC of the entity, the orders and the values, so a changed token or a
+ * token of other orders is rejected
+ * The key of the signatures is random in each JVM, unless a key shared by all the instances is set
+ */
+final class ContinuationToken {
+
+    private static final byte VERSION = 1;
+    private static final int MAX_BYTES = 4096;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_BYTES = 32;
+    private static final int MIN_KEY_BYTES = 32;
+    private static final Codec ENUM_CODEC = new Codec('E', value -> ((Enum<?>) value).name(), ContinuationToken::parseEnum);
+    private static final Codec DATE_CODEC = new Codec('W', value -> toInstant((Date) value).toString(), ContinuationToken::parseDate);
+    private static final Map<Class<?>, Codec> CODECS = Map.ofEntries(
+            Map.entry(String.class, new Codec('S', Object::toString, (type, literal) -> literal)),
+            Map.entry(Character.class, new Codec('C', Object::toString, (type, literal) -> parseCharacter(literal))),
+            Map.entry(Boolean.class, new Codec('Z', Object::toString, (type, literal) -> parseBoolean(literal))),
+            Map.entry(Byte.class, new Codec('B', Object::toString, (type, literal) -> Byte.valueOf(literal))),
+            Map.entry(Short.class, new Codec('H', Object::toString, (type, literal) -> Short.valueOf(literal))),
+            Map.entry(Integer.class, new Codec('I', Object::toString, (type, literal) -> Integer.valueOf(literal))),
+            Map.entry(Long.class, new Codec('J', Object::toString, (type, literal) -> Long.valueOf(literal))),
+            Map.entry(Float.class, new Codec('F', Object::toString, (type, literal) -> Float.valueOf(literal))),
+            Map.entry(Double.class, new Codec('D', Object::toString, (type, literal) -> Double.valueOf(literal))),
+            Map.entry(BigInteger.class, new Codec('G', Object::toString, (type, literal) -> new BigInteger(literal))),
+            Map.entry(BigDecimal.class, new Codec('M', Object::toString, (type, literal) -> new BigDecimal(literal))),
+            Map.entry(UUID.class, new Codec('U', Object::toString, (type, literal) -> UUID.fromString(literal))),
+            Map.entry(LocalDate.class, new Codec('d', Object::toString, (type, literal) -> LocalDate.parse(literal))),
+            Map.entry(LocalTime.class, new Codec('t', Object::toString, (type, literal) -> LocalTime.parse(literal))),
+            Map.entry(LocalDateTime.class, new Codec('l', Object::toString, (type, literal) -> LocalDateTime.parse(literal))),
+            Map.entry(Instant.class, new Codec('i', Object::toString, (type, literal) -> Instant.parse(literal))),
+            Map.entry(OffsetTime.class, new Codec('q', Object::toString, (type, literal) -> OffsetTime.parse(literal))),
+            Map.entry(OffsetDateTime.class, new Codec('o', Object::toString, (type, literal) -> OffsetDateTime.parse(literal))),
+            Map.entry(ZonedDateTime.class, new Codec('z', Object::toString, (type, literal) -> ZonedDateTime.parse(literal))));
+    private static volatile SecretKeySpec key = new SecretKeySpec(randomKey(), MAC_ALGORITHM);
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * Method that sets the key of the signatures of the tokens, that must be the same in all the instances that
+     * receive the tokens of each other
+     * @param secret the key
+     * @throws IllegalArgumentException if the key has less than 32 bytes
+     */
+    static void setKey(byte[] secret) {
+        if(secret == null || secret.length < MIN_KEY_BYTES){
+            throw new IllegalArgumentException("The key of the continuation tokens must have at least " + MIN_KEY_BYTES + " bytes");
+        }
+        key = new SecretKeySpec(secret.clone(), MAC_ALGORITHM);
+    }
+
+    /**
+     * Method that encodes the values of the order fields in the last row of a page into a continuation token
+     * @param genericOrders the generic orders of the pagination
+     * @param lastRow the last row of the page
+     * @param entityType the metamodel of the entity
+     * @return the continuation token
+     * @throws IllegalArgumentException if the type of some order field can't be in a token
+     */
+    static String encode(GenericOrder[] genericOrders, Object lastRow, ManagedType<?> entityType) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream output = new DataOutputStream(bytes)){
+            output.writeByte(VERSION);
+            for(GenericOrder genericOrder : genericOrders){
+                Codec codec = codec(entityType, genericOrder.getField());
+                Object value = FieldAccessor.of(genericOrder.getField()).value(lastRow);
+                output.writeBoolean(value != null);
+                if(value != null){
+                    output.writeByte(codec.tag());
+                    output.writeUTF(codec.format().apply(value));
+                }
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        byte[] payload = bytes.toByteArray();
+        byte[] token = Arrays.copyOf(payload, payload.length + MAC_BYTES);
+        System.arraycopy(sign(genericOrders, entityType, payload), 0, token, payload.length, MAC_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Method that decodes the values of the last row of a page from a continuation token
+     * @param token the continuation token
+     * @param genericOrders the generic orders of the pagination, that must be the same used to encode the token
+     * @param entityType the metamodel of the entity
+     * @return the values of the order fields in the last row
+     * @throws WrongContinuationTokenException if the token is malformed, it was changed or it was created with other
+     * orders
+     */
+    static Object[] decode(String token, GenericOrder[] genericOrders, ManagedType<?> entityType) throws WrongContinuationTokenException {
+        byte[] bytes;
+        try{
+            bytes = Base64.getUrlDecoder().decode(token);
+        }catch(IllegalArgumentException e){
+            throw new WrongContinuationTokenException("The continuation token is malformed", e);
+        }
+        if(bytes.length > MAX_BYTES){
+            throw new WrongContinuationTokenException("The continuation token is too long");
+        }
+        if(bytes.length <= MAC_BYTES){
+            throw new WrongContinuationTokenException("The continuation token is malformed");
+        }
+        byte[] payload = Arrays.copyOf(bytes, bytes.length - MAC_BYTES);
+        if(!MessageDigest.isEqual(sign(genericOrders, entityType, payload), Arrays.copyOfRange(bytes, payload.length, bytes.length))){
+            throw new WrongContinuationTokenException("The continuation token does not belong to these orders or it was changed");
+        }
+
+        try(DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload))){
+            if(input.readByte() != VERSION){
+                throw new WrongContinuationTokenException("The version of the continuation token is not supported");
+            }
+            Object[] values = new Object[genericOrders.length];
+            for(int i = 0; i < genericOrders.length; i++){
+                if(input.readBoolean()){
+                    Class<?> type = fieldType(entityType, genericOrders[i].getField());
+                    Codec codec = codec(entityType, genericOrders[i].getField());
+                    if(input.readByte() != codec.tag()){
+                        throw new WrongContinuationTokenException("The continuation token does not match the types of the orders");
+                    }
+                    values[i] = codec.parse().apply(type, input.readUTF());
+                }
+            }
+            if(input.available() > 0){
+                throw new WrongContinuationTokenException("The continuation token is malformed");
+            }
+            return values;
+        }catch(IOException | RuntimeException e){
+            throw new WrongContinuationTokenException("The continuation token is malformed", e);
+        }
+    }
+
+    /**
+     * Method that signs the payload of a token with the entity and the orders of the pagination
+     * @param genericOrders the generic orders of the pagination
+     * @param entityType the metamodel of the entity
+     * @param payload the payload of the token
+     * @return the signature
+     */
+    private static byte[] sign(GenericOrder[] genericOrders, ManagedType<?> entityType, byte[] payload) {
+        try{
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update((entityType.getJavaType().getName() + "\n" + GenericOrder.signature(genericOrders) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(payload);
+        }catch(GeneralSecurityException e){
+            throw new IllegalStateException("The continuation token can't be signed", e);
+        }
+    }
+
+    /**
+     * Method that gets the codec of the type of an order field
+     * @param entityType the metamodel of the entity
+     * @param field the order field
+     * @return the codec
+     * @throws IllegalArgumentException if the type of the field can't be in a token
+     */
+    private static Codec codec(ManagedType<?> entityType, String field) {
+        Class<?> type = fieldType(entityType, field);
+        Codec codec = type.isEnum() ? ENUM_CODEC : Date.class.isAssignableFrom(type) ? DATE_CODEC : CODECS.get(type);
+        if(codec == null){
+            throw new IllegalArgumentException("The field " + field + " can't be in a continuation token, because its type is not supported");
+        }
+        return codec;
+    }
+
+    /**
+     * Method that gets the type of an order field in the metamodel, with the primitive types wrapped
+     * @param entityType the metamodel of the entity
+     * @param field the order field
+     * @return the type of the field
+     */
+    private static Class<?> fieldType(ManagedType<?> entityType, String field) {
+        return MethodType.methodType(FieldPath.of(entityType, field).getJavaType()).wrap().returnType();
+    }
+
+    /**
+     * Method that parses the name of a constant of the enum of an order field
+     * @param type the enum of the field
+     * @param literal the name of the constant
+     * @return the constant
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parseEnum(Class<?> type, String literal) {
+        return Enum.valueOf((Class<? extends Enum>) type, literal);
+    }
+
+    /**
+     * Method that parses an instant into the date type of an order field
+     * @param type the date type of the field
+     * @param literal the instant
+     * @return the date
+     */
+    private static Object parseDate(Class<?> type, String literal) {
+        Instant instant = Instant.parse(literal);
+        if(type == java.sql.Date.class){
+            return new java.sql.Date(instant.toEpochMilli());
+        }
+        if(type == java.sql.Time.class){
+            return new java.sql.Time(instant.toEpochMilli());
+        }
+        // a timestamp keeps the nanoseconds of the last row
+        return Timestamp.from(instant);
+    }
+
+    /**
+     * Method that gets the instant of a date, with the nanoseconds of the timestamps
+     * @param date the date
+     * @return the instant
+     */
+    private static Instant toInstant(Date date) {
+        return date instanceof Timestamp timestamp ? timestamp.toInstant() : Instant.ofEpochMilli(date.getTime());
+    }
+
+    /**
+     * Method that parses a character
+     * @param literal the character
+     * @return the character
+     */
+    private static Character parseCharacter(String literal) {
+        if(literal.length() != 1){
+            throw new IllegalArgumentException("The literal is not a character");
+        }
+        return literal.charAt(0);
+    }
+
+    /**
+     * Method that parses a boolean, accepting only its two literals
+     * @param literal the boolean
+     * @return the boolean
+     */
+    private static Boolean parseBoolean(String literal) {
+        if(!literal.equals(Boolean.TRUE.toString()) && !literal.equals(Boolean.FALSE.toString())){
+            throw new IllegalArgumentException("The literal is not a boolean");
+        }
+        return Boolean.valueOf(literal);
+    }
+
+    /**
+     * Method that generates a random key of the signatures
+     * @return the key
+     */
+    private static byte[] randomKey() {
+        byte[] secret = new byte[MIN_KEY_BYTES];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * Writer and reader of the values of a type in the tokens
+     * @param tag the tag of the type
+     * @param format the writer of a value into a literal
+     * @param parse the reader of a literal into a value of the type of an order field
+     */
+    private record Codec(char tag, Function<Object, String> format, BiFunction<Class<?>, String, Object> parse) {
+    }
+}
@@ -0,0 +1,133 @@
+package lf.sol.genericrepository.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the counts of a repository, by shape and values of the condition, with least recently used eviction and a
+ * time to live
+ * The counts of an entity are invalidated by every write of the repositories of that entity and by the completion of
+ * its transaction, and the counts read while a transaction that wrote the entity is open are not cached
+ */
+public final class CountCache {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<Key, Entry> counts;
+    private final LongAdder evictions;
+
+    private CountCache(int maxEntries, Duration ttl) {
+        if(maxEntries <= 0 || ttl.isNegative() || ttl.isZero()){
+            throw new IllegalArgumentException("The bound and the time to live of the cache must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.counts = new LinkedHashMap<>(16, 0.75f, true);
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Method that generates a count cache
+     * @param maxEntries the maximum number of cached counts
+     * @param ttl the time to live of each cached count
+     * @return the count cache
+     */
+    public static CountCache of(int maxEntries, Duration ttl){
+        return new CountCache(maxEntries, ttl);
+    }
+
+    /**
+     * Method that gets the number of cached counts, including the expired ones not removed yet
+     * @return the number of cached counts
+     */
+    public synchronized int getSize() {
+        return counts.size();
+    }
+
+    /**
+     * Method that gets the number of counts removed from the cache to respect its bound
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Method that gets a cached count
+     * @param entityClass the class of the entity
+     * @param shape the shape of the count query
+     * @param parameterValues the values of the count query
+     * @param writeVersion the current version of the writes of the entity
+     * @return the count, or null if it is not cached, it is expired or the entity was written after counting
+     */
+    synchronized Long get(Class<?> entityClass, String shape, List<?> parameterValues, long writeVersion){
+        if(writeVersion == WriteVersions.PENDING){
+            return null;
+        }
+        Key key = new Key(entityClass, shape, parameterValues);
+        Entry entry = counts.get(key);
+        if(entry == null){
+            return null;
+        }
+        if(entry.expiresAt - System.nanoTime() <= 0 || entry.writeVersion != writeVersion){
+            counts.remove(key);
+            return null;
+        }
+        return entry.count;
+    }
+
+    /**
+     * Method that caches a count, unless it was counted while a transaction that wrote the entity was open
+     * @param entityClass the class of the entity
+     * @param shape the shape of the count query
+     * @param parameterValues the values of the count query
+     * @param count the count
+     * @param writeVersion the version of the writes of the entity before counting
+     */
+    synchronized void put(Class<?> entityClass, String shape, List<?> parameterValues, Long count, long writeVersion){
+        if(writeVersion == WriteVersions.PENDING){
+            return;
+        }
+        counts.put(new Key(entityClass, shape, Collections.unmodifiableList(new ArrayList<>(parameterValues))),
+                new Entry(count, System.nanoTime() + ttlNanos, writeVersion));
+
+        // evicts the least recently used counts
+        Iterator<Entry> eldest = counts.values().iterator();
+        while(counts.size() > maxEntries && eldest.hasNext()){
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Method that removes all the counts from the cache
+     */
+    public synchronized void invalidateAll(){
+        counts.clear();
+    }
+
+    /**
+     * Key of a cached count
+     * @param entityClass the class of the entity
+     * @param shape the shape of the count query
+     * @param parameterValues the values of the count query
+     */
+    private record Key(Class<?> entityClass, String shape, List<?> parameterValues) {
+    }
+
+    /**
+     * Cached count
+     * @param count the count
+     * @param expiresAt the expiration time, in nanoseconds
+     * @param writeVersion the version of the writes of the entity before counting
+     */
+    private record Entry(Long count, long expiresAt, long writeVersion) {
+    }
+}
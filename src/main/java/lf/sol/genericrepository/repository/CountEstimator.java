@@ -0,0 +1,65 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+
+/**
+ * Estimator of the total number of results of an entity, without counting them, from the statistics of its table
+ * The estimates are only used for the counts without conditions
+ */
+@FunctionalInterface
+public interface CountEstimator {
+
+    /**
+     * Method that estimates the total number of results of the entity
+     * @param entityManager the entity manager to read the statistics
+     * @return the estimated number of results, or null if there is no estimate
+     */
+    Long estimate(EntityManager entityManager);
+
+    /**
+     * Method that generates an estimator from the statistics of a PostgreSQL table, updated by analyze and vacuum
+     * @param table the name of the table, optionally with the schema
+     * @return the count estimator
+     */
+    static CountEstimator postgresql(String table){
+        return fromStatistics("select reltuples from pg_class where oid = to_regclass(?1)", table);
+    }
+
+    /**
+     * Method that generates an estimator from the statistics of a MySQL table in the current database
+     * @param table the name of the table
+     * @return the count estimator
+     */
+    static CountEstimator mysql(String table){
+        return fromStatistics("select table_rows from information_schema.tables where table_schema = database() "
+                + "and table_name = ?1", table);
+    }
+
+    /**
+     * Method that generates an estimator from the statistics of a H2 table
+     * @param table the name of the table, as stored by the database
+     * @return the count estimator
+     */
+    static CountEstimator h2(String table){
+        return fromStatistics("select row_count_estimate from information_schema.tables where table_name = ?1", table);
+    }
+
+    /**
+     * Method that generates an estimator from a native query of the statistics of a table
+     * @param statisticsQuery the native query, with the name of the table as first parameter
+     * @param table the name of the table
+     * @return the count estimator
+     */
+    private static CountEstimator fromStatistics(String statisticsQuery, String table){
+        return entityManager -> {
+            List<?> results = entityManager.createNativeQuery(statisticsQuery).setParameter(1, table).getResultList();
+            // the tables never analyzed have no (or negative) statistics
+            if(results.isEmpty() || !(results.getFirst() instanceof Number estimate) || estimate.longValue() < 0){
+                return null;
+            }
+            return estimate.longValue();
+        };
+    }
+}
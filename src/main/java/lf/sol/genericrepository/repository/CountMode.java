@@ -0,0 +1,35 @@
+package lf.sol.genericrepository.repository;
+
+/**
+ * The ways of getting the count of a pagination
+ * In every mode, the count query is skipped if the count can be derived from the page, which happens when the
+ * page is the last one (it has fewer results than the limit)
+ */
+public enum CountMode {
+
+    /**
+     * The count query runs after the page query, in the same persistence context
+     */
+    SEQUENTIAL,
+
+    /**
+     * The count query runs at the same time as the page query, in a separate persistence context
+     * The count only sees committed data, because it runs outside the current transaction
+     * The count is cancelled if the page query fails or makes it unnecessary, and if the repository limits the
+     * concurrent counts and there is no free permit, it runs after the page query
+     */
+    CONCURRENT,
+
+    /**
+     * The count query only runs when the count is requested from the pagination
+     * The count must be requested while the persistence context of the repository is still open
+     */
+    LAZY,
+
+    /**
+     * The count is estimated from the statistics of the table, by the count estimator of the repository, when the
+     * condition has no predicates
+     * If there is no estimator, no estimate or the condition has predicates, the count query runs sequentially
+     */
+    ESTIMATED
+}
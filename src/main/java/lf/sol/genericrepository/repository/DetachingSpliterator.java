@@ -0,0 +1,57 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the results of a query that detaches the entities in chunks, after they are processed, so the
+ * persistence context does not grow with the number of results
+ * The persistence context is not cleared, because it can hold other entities of the caller, so the associations
+ * loaded with the entities are only detached if they cascade the detach
+ */
+final class DetachingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+    private final Iterator<T> results;
+    private final EntityManager entityManager;
+    private final int chunkSize;
+    private final List<T> chunk;
+
+    DetachingSpliterator(Iterator<T> results, EntityManager entityManager, int chunkSize) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.results = results;
+        this.entityManager = entityManager;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if(!results.hasNext()){
+            detachChunk();
+            return false;
+        }
+        T result = results.next();
+        // the previous chunk was already processed
+        if(chunk.size() == chunkSize){
+            detachChunk();
+        }
+        chunk.add(result);
+        action.accept(result);
+        return true;
+    }
+
+    /**
+     * Method that detaches the entities of the current chunk from the persistence context
+     * It's also called when the stream is closed before reaching the end
+     */
+    void detachChunk() {
+        chunk.forEach(entityManager::detach);
+        chunk.clear();
+    }
+}
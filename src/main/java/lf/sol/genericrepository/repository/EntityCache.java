@@ -0,0 +1,219 @@
+package lf.sol.genericrepository.repository;
+
+import lf.sol.genericrepository.model.GenericEntity;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of the entities of a repository by ID, with least recently used eviction and a time to live
+ * The entities are kept as serialized snapshots, so each hit returns a new detached copy that can be used by one
+ * thread without affecting the cached entity or the other threads
+ * The cache is bounded by the number of entities or by their serialized size (weight) in bytes
+ * Only committed state is cached: the entities read while a transaction that wrote them is open are not cached
+ */
+public final class EntityCache {
+
+    private final long maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final Map<Object, Snapshot> snapshots;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private long weight;
+    private long version;
+
+    private EntityCache(long maxEntries, long maxWeight, Duration ttl) {
+        if(maxEntries <= 0 || maxWeight <= 0 || ttl.isNegative() || ttl.isZero()){
+            throw new IllegalArgumentException("The bounds and the time to live of the cache must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Method that generates a cache bounded by the number of entities
+     * @param maxEntries the maximum number of cached entities
+     * @param ttl the time to live of each cached entity
+     * @return the entity cache
+     */
+    public static EntityCache withMaxEntries(long maxEntries, Duration ttl){
+        return new EntityCache(maxEntries, Long.MAX_VALUE, ttl);
+    }
+
+    /**
+     * Method that generates a cache bounded by the serialized size of the entities
+     * @param maxWeight the maximum number of bytes of the cached entities
+     * @param ttl the time to live of each cached entity
+     * @return the entity cache
+     */
+    public static EntityCache withMaxWeight(long maxWeight, Duration ttl){
+        return new EntityCache(Long.MAX_VALUE, maxWeight, ttl);
+    }
+
+    /**
+     * Method that gets the number of lookups found in the cache
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Method that gets the number of lookups not found (or expired) in the cache
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Method that gets the number of entities removed from the cache to respect its bounds
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Method that gets the number of cached entities, including the expired ones not removed yet
+     * @return the number of cached entities
+     */
+    public synchronized int getSize() {
+        return snapshots.size();
+    }
+
+    /**
+     * Method that gets the serialized size of the cached entities
+     * @return the number of bytes of the cached entities
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Method that gets the version of the cache, which changes on each invalidation
+     * The version is read before loading an entity, so that an entity loaded before an invalidation is not cached
+     * @return the version of the cache
+     */
+    synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Method that gets a detached copy of a cached entity
+     * @param id the ID of the entity
+     * @param entityClass the class of the entity, to resolve the classes of the snapshot
+     * @return the copy of the entity, or null if it is not cached or it is expired
+     */
+    <T extends GenericEntity> T get(Object id, Class<T> entityClass){
+        Snapshot snapshot;
+        synchronized(this){
+            snapshot = snapshots.get(id);
+            if(snapshot != null && snapshot.expiresAt - System.nanoTime() <= 0){
+                remove(id);
+                snapshot = null;
+            }
+        }
+        if(snapshot == null){
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entityClass.cast(Snapshots.deserialize(snapshot.bytes, entityClass.getClassLoader()));
+    }
+
+    /**
+     * Method that checks if an entity is cached and not expired, without restoring it
+     * The lookup is counted as a hit or a miss, like the lookups of the entities
+     * @param id the ID of the entity
+     * @return true if the entity is cached, false if not
+     */
+    boolean contains(Object id){
+        synchronized(this){
+            Snapshot snapshot = snapshots.get(id);
+            if(snapshot != null && snapshot.expiresAt - System.nanoTime() <= 0){
+                remove(id);
+                snapshot = null;
+            }
+            if(snapshot == null){
+                misses.increment();
+                return false;
+            }
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * Method that caches a snapshot of an entity, unless the cache was invalidated after the entity was loaded
+     * @param id the ID of the entity
+     * @param entity the entity
+     * @param loadVersion the version of the cache before loading the entity
+     */
+    void put(Object id, GenericEntity entity, long loadVersion){
+        byte[] bytes = Snapshots.serialize(entity);
+        synchronized(this){
+            if(loadVersion != version){
+                return;
+            }
+            remove(id);
+            snapshots.put(id, new Snapshot(bytes, System.nanoTime() + ttlNanos));
+            weight += bytes.length;
+
+            // evicts the least recently used entities
+            Iterator<Snapshot> eldest = snapshots.values().iterator();
+            while((snapshots.size() > maxEntries || weight > maxWeight) && eldest.hasNext()){
+                weight -= eldest.next().bytes.length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Method that removes an entity from the cache
+     * @param id the ID of the entity
+     */
+    synchronized void invalidate(Object id){
+        version++;
+        remove(id);
+    }
+
+    /**
+     * Method that removes all the entities from the cache
+     */
+    public synchronized void invalidateAll(){
+        version++;
+        snapshots.clear();
+        weight = 0;
+    }
+
+    /**
+     * Method that removes a snapshot, the lock of the cache must be held
+     * @param id the ID of the entity
+     */
+    private void remove(Object id){
+        Snapshot snapshot = snapshots.remove(id);
+        if(snapshot != null){
+            weight -= snapshot.bytes.length;
+        }
+    }
+
+    /**
+     * Serialized entity with its expiration time
+     * @param bytes the serialized entity
+     * @param expiresAt the expiration time, in nanoseconds
+     */
+    private record Snapshot(byte[] bytes, long expiresAt) {
+    }
+}
@@ -0,0 +1,192 @@
+package lf.sol.genericrepository.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reader of a field of the objects in memory (nested fields separated by dots), through method handles of the
+ * getters or, if there is no getter, of the fields
+ * The getters are preferred because the lazy proxies of the providers only load their state through them
+ * The method handles are resolved once per class and field, and each part of the field remembers the last class read,
+ * so reading objects of the same class does not look up the method handles again
+ */
+final class FieldAccessor {
+
+    private static final Pattern PROPERTY_SEPARATOR = Pattern.compile("\\.");
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final Map<String, FieldAccessor> COMPILED_FIELDS = new ConcurrentHashMap<>();
+    private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String field;
+    private final String[] properties;
+    private final ResolvedAccessor[] lastAccessors;
+
+    private FieldAccessor(String field) {
+        this.field = field;
+        this.properties = PROPERTY_SEPARATOR.split(field);
+        this.lastAccessors = new ResolvedAccessor[properties.length];
+    }
+
+    /**
+     * Method that gets the reader of a field, compiling it on the first use
+     * @param field the field, nested fields separated by dots
+     * @return the reader of the field
+     */
+    static FieldAccessor of(String field) {
+        return COMPILED_FIELDS.computeIfAbsent(field, FieldAccessor::new);
+    }
+
+    /**
+     * Method that reads all the values of the field in an object, the collections in the middle of the field are
+     * expanded into their elements
+     * An object without some nested object (a null in the middle of the field) has no values, like in an inner join
+     * @param target the object
+     * @return the values of the field
+     */
+    List<Object> values(Object target) {
+        List<Object> values = new ArrayList<>(1);
+        collect(target, 0, values);
+        return values;
+    }
+
+    /**
+     * Method that reads the single value of the field in an object
+     * @param target the object
+     * @return the value of the field, or null if the field or some nested object is null
+     * @throws IllegalArgumentException if the field crosses a collection
+     */
+    Object value(Object target) {
+        Object value = target;
+        for(int i = 0; i < properties.length && value != null; i++){
+            value = read(value, i);
+            if(value instanceof Collection<?> && i < properties.length - 1){
+                throw new IllegalArgumentException("The field " + field + " has many values, because it crosses a collection");
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Method that reads the values of a part of the field and of the next parts
+     * @param target the object with the part of the field
+     * @param index the index of the part of the field
+     * @param values the list to add the values
+     */
+    private void collect(Object target, int index, List<Object> values) {
+        Object value = read(target, index);
+        if(index == properties.length - 1){
+            values.add(value);
+        }else if(value instanceof Collection<?> elements){
+            for(Object element : elements){
+                if(element != null){
+                    collect(element, index + 1, values);
+                }
+            }
+        }else if(value != null){
+            collect(value, index + 1, values);
+        }
+    }
+
+    /**
+     * Method that reads a part of the field from an object
+     * @param target the object
+     * @param index the index of the part of the field
+     * @return the value of the part of the field
+     */
+    private Object read(Object target, int index) {
+        Class<?> type = target.getClass();
+        ResolvedAccessor lastAccessor = lastAccessors[index];
+        MethodHandle accessor;
+        if(lastAccessor != null && lastAccessor.type == type){
+            accessor = lastAccessor.accessor;
+        }else{
+            accessor = ACCESSORS.get(type).computeIfAbsent(properties[index], property -> resolve(type, property));
+            lastAccessors[index] = new ResolvedAccessor(type, accessor);
+        }
+        try{
+            return (Object) accessor.invokeExact(target);
+        }catch(RuntimeException | Error e){
+            throw e;
+        }catch(Throwable e){
+            throw new IllegalStateException("The field " + field + " can't be read", e);
+        }
+    }
+
+    /**
+     * Method that resolves the method handle that reads a property of a class, from its getter or from its field
+     * @param type the class
+     * @param property the property
+     * @return the method handle, with the type (Object) Object
+     * @throws IllegalArgumentException if the class has no getter nor field of the property
+     */
+    private static MethodHandle resolve(Class<?> type, String property) {
+        String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        try{
+            for(String getter : new String[]{"get" + capitalized, "is" + capitalized}){
+                Method method = findMethod(type, getter);
+                if(method != null){
+                    return lookup(method.getDeclaringClass()).unreflect(method).asType(ACCESSOR_TYPE);
+                }
+            }
+            for(Class<?> declaringType = type; declaringType != null; declaringType = declaringType.getSuperclass()){
+                for(Field declaredField : declaringType.getDeclaredFields()){
+                    if(declaredField.getName().equals(property)){
+                        return lookup(declaringType).unreflectGetter(declaredField).asType(ACCESSOR_TYPE);
+                    }
+                }
+            }
+        }catch(IllegalAccessException e){
+            throw new IllegalArgumentException("The field " + property + " of " + type.getName() + " can't be accessed", e);
+        }
+        throw new IllegalArgumentException("The field " + property + " does not exist in " + type.getName());
+    }
+
+    /**
+     * Method that finds a getter without parameters in a class or its superclasses
+     * @param type the class
+     * @param name the name of the getter
+     * @return the getter, or null if it does not exist
+     */
+    private static Method findMethod(Class<?> type, String name) {
+        for(Class<?> declaringType = type; declaringType != null; declaringType = declaringType.getSuperclass()){
+            for(Method method : declaringType.getDeclaredMethods()){
+                if(method.getName().equals(name) && method.getParameterCount() == 0 && method.getReturnType() != void.class){
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method that gets a lookup with access to the private members of a class
+     * @param type the class
+     * @return the lookup
+     * @throws IllegalAccessException if the module of the class is not open
+     */
+    private static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    /**
+     * Method handle resolved for a class
+     * @param type the class
+     * @param accessor the method handle
+     */
+    private record ResolvedAccessor(Class<?> type, MethodHandle accessor) {
+    }
+}
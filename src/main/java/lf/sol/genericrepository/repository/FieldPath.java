@@ -0,0 +1,155 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Field of an entity (nested fields separated by dots) compiled against the JPA metamodel
+ * Each field is validated and compiled once per entity class, and the compiled fields are cached
+ */
+final class FieldPath {
+
+    private static final Pattern PROPERTY_SEPARATOR = Pattern.compile("\\.");
+    private static final Map<Class<?>, Map<String, FieldPath>> COMPILED_FIELDS = new ConcurrentHashMap<>();
+
+    private final String[] attributes;
+    private final String[] prefixes;
+    private final boolean[] joinable;
+    @Getter(AccessLevel.PACKAGE)
+    private final boolean collection;
+    @Getter(AccessLevel.PACKAGE)
+    private final Class<?> javaType;
+
+    private FieldPath(String[] attributes, boolean[] joinable, boolean collection, Class<?> javaType) {
+        this.attributes = attributes;
+        this.joinable = joinable;
+        this.collection = collection;
+        this.javaType = javaType;
+        this.prefixes = new String[attributes.length];
+        for(int i = 0; i < attributes.length; i++){
+            prefixes[i] = i == 0 ? attributes[0] : prefixes[i - 1] + "." + attributes[i];
+        }
+    }
+
+    /**
+     * Method that gets the compiled field of an entity, compiling it on the first use
+     * @param entityType the metamodel of the entity
+     * @param field the field to compile
+     * @return the compiled field
+     * @throws IllegalArgumentException if the field does not exist in the entity
+     */
+    static FieldPath of(ManagedType<?> entityType, String field) {
+        Map<String, FieldPath> compiledFields = COMPILED_FIELDS.computeIfAbsent(entityType.getJavaType(),
+                entityClass -> new ConcurrentHashMap<>());
+        FieldPath fieldPath = compiledFields.get(field);
+        if(fieldPath == null){
+            fieldPath = compile(entityType, field);
+            compiledFields.putIfAbsent(field, fieldPath);
+        }
+        return fieldPath;
+    }
+
+    /**
+     * Method that compiles a field of an entity, validating each nested field against the metamodel
+     * @param entityType the metamodel of the entity
+     * @param field the field to compile
+     * @return the compiled field
+     * @throws IllegalArgumentException if the field does not exist in the entity
+     */
+    private static FieldPath compile(ManagedType<?> entityType, String field) {
+        String[] attributes = PROPERTY_SEPARATOR.split(field);
+        boolean[] joinable = new boolean[attributes.length];
+        boolean collection = false;
+        Class<?> javaType = entityType.getJavaType();
+        ManagedType<?> managedType = entityType;
+        for(int i = 0; i < attributes.length; i++){
+            if(managedType == null){
+                throw new IllegalArgumentException("The field " + field + " of " + entityType.getJavaType().getName()
+                        + " can't be resolved, " + attributes[i - 1] + " has no nested fields");
+            }
+            Attribute<?, ?> attribute;
+            try{
+                attribute = managedType.getAttribute(attributes[i]);
+            }catch(IllegalArgumentException e){
+                throw new IllegalArgumentException("The field " + field + " does not exist in "
+                        + entityType.getJavaType().getName(), e);
+            }
+            // the last field is only joined if it's a collection, the other entities are compared by their keys
+            joinable[i] = attribute.isCollection() || (attribute.isAssociation() && i < attributes.length - 1);
+            collection |= attribute.isCollection();
+
+            // the next nested fields belong to the type of this field
+            if(attribute instanceof PluralAttribute<?, ?, ?> pluralAttribute){
+                javaType = pluralAttribute.getElementType().getJavaType();
+                managedType = pluralAttribute.getElementType() instanceof ManagedType<?> elementType ? elementType : null;
+            }else{
+                javaType = attribute.getJavaType();
+                managedType = attribute instanceof SingularAttribute<?, ?> singularAttribute
+                        && singularAttribute.getType() instanceof ManagedType<?> type ? type : null;
+            }
+        }
+        return new FieldPath(attributes, joinable, collection, javaType);
+    }
+
+    /**
+     * Method that checks if the field needs joins of other entities to be resolved
+     * @return true if the field needs joins, false if not
+     */
+    boolean requiresJoin() {
+        for(boolean join : joinable){
+            if(join){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that resolves the field in a query, joining the nested entities
+     * The join of each nested entity is created once per query and reused by the other fields with the same prefix
+     * @param root the root entity of the query
+     * @param joins the joins already created in the query, by prefix
+     * @return the field
+     */
+    Path<?> resolve(From<?, ?> root, Map<String, Join<?, ?>> joins) {
+        return resolve(root, joins, JoinType.INNER);
+    }
+
+    /**
+     * Method that resolves the field in a query, joining the nested entities not joined yet with a type of join
+     * @param root the root entity of the query
+     * @param joins the joins already created in the query, by prefix
+     * @param joinType the type of the new joins
+     * @return the field
+     */
+    Path<?> resolve(From<?, ?> root, Map<String, Join<?, ?>> joins, JoinType joinType) {
+        Path<?> path = root;
+        From<?, ?> from = root;
+        for(int i = 0; i < attributes.length; i++){
+            // the fields inside embedded types can't be joined, they are accessed through the path
+            if(joinable[i] && path == from){
+                Join<?, ?> join = joins.get(prefixes[i]);
+                if(join == null){
+                    join = from.join(attributes[i], joinType);
+                    joins.put(prefixes[i], join);
+                }
+                path = from = join;
+            }else{
+                path = path.get(attributes[i]);
+            }
+        }
+        return path;
+    }
+}
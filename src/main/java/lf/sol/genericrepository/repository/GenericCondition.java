@@ -1,37 +1,44 @@
 package lf.sol.genericrepository.repository;
 
 import jakarta.persistence.criteria.*;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import lf.sol.genericrepository.exception.WrongPaginationParamsException;
 import lf.sol.genericrepository.model.GenericEntity;
-import lombok.AccessLevel;
-import lombok.Getter;
+import lf.sol.genericrepository.repository.ConditionClause.Operator;
 
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class GenericCondition<T extends GenericEntity> {
 
-    private static final String LIKE_SEPARATOR = "%";
-    private static final String PROPERTY_SEPARATOR = ".";
-    private final List<Predicate> predicates;
-    private final List<Predicate> predicatesCount;
-    private final Root<T> root;
-    private final Root<T> rootCount;
+    private static final String PARAMETER_PREFIX = "p";
+    private static final String SHAPE_SEPARATOR = "|";
+    private static final Set<Class<?>> INTEGER_KEY_TYPES = Set.of(Long.class, Integer.class, Short.class, Byte.class, BigInteger.class);
+    private final List<ConditionClause> clauses;
+    private final Set<String> fetches;
+    private final EntityType<T> entityType;
     private final CriteriaBuilder criteriaBuilder;
-    private final CriteriaQuery<T> criteriaQuery;
-    private final CriteriaQuery<Long> criteriaQueryCount;
     protected final boolean doCount;
+    private boolean readOnly;
 
 
-    protected GenericCondition(Root<T> root, Root<T> rootCount, CriteriaBuilder criteriaBuilder,
-                               CriteriaQuery<T> criteriaQuery, CriteriaQuery<Long> criteriaQueryCount, boolean doCount) {
-        this.predicates = new ArrayList<>();
-        this.predicatesCount = new ArrayList<>();
-        this.root = root;
-        this.rootCount = rootCount;
+    protected GenericCondition(EntityType<T> entityType, CriteriaBuilder criteriaBuilder, boolean doCount) {
+        this.clauses = new ArrayList<>();
+        this.fetches = new LinkedHashSet<>();
+        this.entityType = entityType;
         this.criteriaBuilder = criteriaBuilder;
-        this.criteriaQuery = criteriaQuery;
-        this.criteriaQueryCount = criteriaQueryCount;
         this.doCount = doCount;
     }
 
@@ -42,10 +49,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> equal(String field, Object value){
-        equal(field, value, predicates, root);
-        if(doCount){
-            equal(field, value, predicatesCount, rootCount);
-        }
+        add(ConditionClause.equal(field, value));
         return this;
     }
 
@@ -56,10 +60,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> notEqual(String field, Object value){
-        notEqual(field, value, predicates, root);
-        if(doCount){
-            notEqual(field, value, predicatesCount, rootCount);
-        }
+        add(ConditionClause.notEqual(field, value));
         return this;
     }
 
@@ -69,10 +70,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> isTrue(String field){
-        isTrue(field, predicates, root);
-        if(doCount){
-            isTrue(field, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(Operator.IS_TRUE, field));
         return this;
     }
 
@@ -82,10 +80,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> isFalse(String field){
-        isFalse(field, predicates, root);
-        if(doCount){
-            isFalse(field, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(Operator.IS_FALSE, field));
         return this;
     }
 
@@ -95,10 +90,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> isNull(String field){
-        isNull(field, predicates, root);
-        if(doCount){
-            isNull(field, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(Operator.IS_NULL, field));
         return this;
     }
 
@@ -108,10 +100,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> isNotNull(String field){
-        isNotNull(field, predicates, root);
-        if(doCount){
-            isNotNull(field, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(Operator.IS_NOT_NULL, field));
         return this;
     }
 
@@ -123,10 +112,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> greater(String field, String value, boolean orEqual){
-        greater(field, value, orEqual, false, predicates, root);
-        if(doCount){
-            greater(field, value, orEqual, false, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(orEqual ? Operator.GREATER_OR_EQUAL : Operator.GREATER, field, value));
         return this;
     }
 
@@ -138,10 +124,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> greater(String field, Number value, boolean orEqual){
-        greater(field, value, orEqual, true, predicates, root);
-        if(doCount){
-            greater(field, value, orEqual, true, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(orEqual ? Operator.GREATER_OR_EQUAL : Operator.GREATER, field, value));
         return this;
     }
 
@@ -153,10 +136,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> less(String field, String value, boolean orEqual){
-        less(field, value, orEqual, false, predicates, root);
-        if(doCount){
-            less(field, value, orEqual, false, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(orEqual ? Operator.LESS_OR_EQUAL : Operator.LESS, field, value));
         return this;
     }
 
@@ -168,10 +148,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> less(String field, Number value, boolean orEqual){
-        less(field, value, orEqual, true, predicates, root);
-        if(doCount){
-            less(field, value, orEqual, true, predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(orEqual ? Operator.LESS_OR_EQUAL : Operator.LESS, field, value));
         return this;
     }
 
@@ -183,10 +160,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> between(String field, Number value1, Number value2){
-        between(field, value1.toString(), value2.toString(), predicates, root);
-        if(doCount){
-            between(field, value1.toString(), value2.toString(), predicatesCount, rootCount);
-        }
+        add(ConditionClause.of(Operator.BETWEEN, field, value1, value2));
         return this;
     }
 
@@ -197,10 +171,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> in(String field, List<Object> values) {
-        in(field, values, predicates, root);
-        if (doCount) {
-            in(field, values, predicatesCount, rootCount);
-        }
+        add(ConditionClause.in(field, values));
         return this;
     }
 
@@ -221,10 +192,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> like(String field, Object value){
-        like(field, value, predicates, root);
-        if(doCount){
-            like(field, value, predicatesCount, rootCount);
-        }
+        add(ConditionClause.like(field, value));
         return this;
     }
 
@@ -235,10 +203,7 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the generic condition
      */
     public GenericCondition<T> disjunctionLike(Object value, String... fields){
-        disjunctionLike(value, predicates, root, fields);
-        if(doCount){
-            disjunctionLike(value, predicatesCount, rootCount, fields);
-        }
+        add(ConditionClause.disjunctionLike(value, fields));
         return this;
     }
 
@@ -249,22 +214,225 @@ public class GenericCondition<T extends GenericEntity> {
      */
     @SafeVarargs
     public final GenericCondition<T> andOr(GenericCondition<T> firstCondition, GenericCondition<T> secondCondition, GenericCondition<T>... genericConditions){
-        List<Predicate> newPredicates = new ArrayList<>();
-        newPredicates.add(criteriaBuilder.and(firstCondition.predicates.toArray(new Predicate[0])));
-        newPredicates.add(criteriaBuilder.and(secondCondition.predicates.toArray(new Predicate[0])));
+        List<List<ConditionClause>> groups = new ArrayList<>();
+        groups.add(List.copyOf(firstCondition.clauses));
+        groups.add(List.copyOf(secondCondition.clauses));
         for(GenericCondition<T> genericCondition : genericConditions){
-            newPredicates.add(criteriaBuilder.and(genericCondition.predicates.toArray(new Predicate[0])));
+            groups.add(List.copyOf(genericCondition.clauses));
         }
-        predicates.add(criteriaBuilder.or(newPredicates.toArray(new Predicate[0])));
+        clauses.add(ConditionClause.or(groups));
         return this;
     }
 
+    /**
+     * Method that adds the predicates and the associations to fetch of a condition specification, joined with AND
+     * The predicates of the specification are immutable, so they are shared instead of built again
+     * @param conditionSpec the condition specification
+     * @return the generic condition
+     * @throws IllegalArgumentException if the specification is of another entity or some field does not exist in the
+     * entity
+     */
+    public GenericCondition<T> and(ConditionSpec<T> conditionSpec){
+        conditionSpec.checkEntity(entityType);
+        conditionSpec.getClauses().forEach(this::add);
+        return fetch(conditionSpec.getFetches().toArray(String[]::new));
+    }
+
+    /**
+     * Method that fetches associations (nested associations separated by dots, for example "customer.address") with
+     * the results, instead of loading them lazily for each result
+     * The fetches only apply to the queries of the entities, not to the counts or projections
+     * @param fields the entity associations to fetch
+     * @return the generic condition
+     */
+    public GenericCondition<T> fetch(String... fields){
+        for(String field : fields){
+            FieldPath.of(entityType, field);
+            fetches.add(field);
+        }
+        return this;
+    }
+
+    /**
+     * Method that reads the results as read only, so that the provider doesn't keep a snapshot of each result to check
+     * its changes on flush, and the results are detached from the persistence context after reading
+     * The results are not written by the flushes, their lazy associations can't be loaded after reading (they must be
+     * fetched with the results), and the entities already loaded in the persistence context are detached too
+     * The read only mode only applies to the queries of the entities, the counts and projections are never managed
+     * @return the generic condition
+     */
+    public GenericCondition<T> readOnly(){
+        readOnly = true;
+        return this;
+    }
+
+    /**
+     * Method that compiles the condition into a predicate of the entities in memory, with the same semantics of the
+     * queries, so that the entities already loaded can be filtered without queries
+     * The predicate has the predicates of the condition at the time of the compilation
+     * @return the predicate of the entities
+     */
+    public java.util.function.Predicate<T> toPredicate(){
+        return InMemoryCondition.toPredicate(List.copyOf(clauses));
+    }
+
+    /**
+     * Method that filters and sorts entities in memory with the condition, without queries
+     * @param entities the entities
+     * @param genericOrders the generic orders to apply
+     * @return the entities that match the condition, sorted
+     */
+    public List<T> filter(Collection<T> entities, GenericOrder... genericOrders){
+        return entities.stream().filter(toPredicate()).sorted(GenericOrder.toComparator(genericOrders)).toList();
+    }
+
+    /**
+     * Method that filters, sorts and paginates entities in memory with the condition, without queries
+     * @param entities the entities
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param genericOrders the generic orders to apply
+     * @return the page of entities that match the condition, with the count of all the entities that match it
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    public Pagination<T> paginate(Collection<T> entities, int offset, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException {
+        if(offset < 0 || limit < 0){
+            throw new WrongPaginationParamsException("The offset or limit pagination params can't be less than zero");
+        }
+        List<T> results = filter(entities, genericOrders);
+        return new Pagination<>(List.copyOf(results.subList(Math.min(offset, results.size()), (int) Math.min((long) offset + limit, results.size()))),
+                (long) results.size());
+    }
+
     /**
      * Method that initiates a sub condition to be used with "ands" and "ors" condition
      * @return the new sub condition
      */
     public GenericCondition<T> initSubCondition() {
-        return new GenericCondition<>(root, rootCount, criteriaBuilder, criteriaQuery, criteriaQueryCount, doCount);
+        return new GenericCondition<>(entityType, criteriaBuilder, doCount);
+    }
+
+    /**
+     * Method that copies the condition, so that predicates can be added to the copy without changing the condition
+     * @return the copy of the condition
+     */
+    protected GenericCondition<T> copy() {
+        GenericCondition<T> genericCondition = new GenericCondition<>(entityType, criteriaBuilder, doCount);
+        genericCondition.clauses.addAll(clauses);
+        genericCondition.fetches.addAll(fetches);
+        genericCondition.readOnly = readOnly;
+        return genericCondition;
+    }
+
+    /**
+     * Method that gets the strategy of the in lists of the condition
+     * @param splittable true if the query can be split into a query for each chunk of an in list, false if not
+     * @return the most expensive strategy of the in lists, or null if the condition has no in lists
+     */
+    protected InListStrategy getInListStrategy(boolean splittable){
+        if(splittable && getSplitClause() >= 0){
+            return InListStrategy.CHUNKED;
+        }
+        return clauses.stream().flatMap(GenericCondition::inLists)
+                .map(values -> values.size() > ConditionClause.IN_LIST_CHUNK_SIZE ? InListStrategy.WHOLE : InListStrategy.PADDED)
+                .max(Comparator.naturalOrder()).orElse(null);
+    }
+
+    /**
+     * Method that splits the condition into a condition for each chunk of its largest in list, so that each query
+     * stays under the parameter limits of the database
+     * Only the in lists of the condition (not inside an "or") of fields that are not collections can be split, so that
+     * each result matches only one chunk, and the repeated values are removed before splitting
+     * @return the conditions of the chunks, or the condition itself if it has no in list to split
+     */
+    protected List<GenericCondition<T>> splitInList(){
+        int splitClause = getSplitClause();
+        if(splitClause < 0){
+            return List.of(this);
+        }
+        ConditionClause clause = clauses.get(splitClause);
+        List<?> values = new ArrayList<>(new LinkedHashSet<>((List<?>) clause.getValues()[0]));
+        List<GenericCondition<T>> chunks = new ArrayList<>();
+        for(int start = 0; start < values.size(); start += ConditionClause.IN_LIST_CHUNK_SIZE){
+            GenericCondition<T> chunk = copy();
+            chunk.clauses.set(splitClause, ConditionClause.in(clause.getFields()[0],
+                    values.subList(start, Math.min(start + ConditionClause.IN_LIST_CHUNK_SIZE, values.size()))));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Method that checks if a field can be the key of a partitioned scan, which needs an integer field
+     * @param field the entity field
+     * @throws IllegalArgumentException if the field does not exist or it is not an integer
+     */
+    protected void validatePartitionKey(String field){
+        if(!INTEGER_KEY_TYPES.contains(keyType(field))){
+            throw new IllegalArgumentException("The field " + field + " can't partition the results, because it is not an integer");
+        }
+    }
+
+    /**
+     * Method that splits the condition into conditions of consecutive ranges of a key field with the same width,
+     * between the lowest and the highest values of the key
+     * @param field the key field, an integer
+     * @param lowest the lowest value of the key
+     * @param highest the highest value of the key
+     * @param partitions the maximum number of ranges
+     * @return the conditions of the ranges, in the order of the key
+     */
+    protected List<GenericCondition<T>> partition(String field, Number lowest, Number highest, int partitions){
+        validatePartitionKey(field);
+        Class<?> type = keyType(field);
+        BigInteger lowestKey = new BigInteger(lowest.toString());
+        BigInteger highestKey = new BigInteger(highest.toString());
+        BigInteger span = highestKey.subtract(lowestKey).add(BigInteger.ONE);
+        int ranges = span.min(BigInteger.valueOf(partitions)).intValue();
+        List<GenericCondition<T>> rangeConditions = new ArrayList<>(ranges);
+        for(int i = 0; i < ranges; i++){
+            GenericCondition<T> rangeCondition = copy();
+            rangeCondition.add(ConditionClause.of(Operator.GREATER_OR_EQUAL, field,
+                    toKey(lowestKey.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(ranges))), type)));
+            // the last range includes the highest value
+            rangeCondition.add(i < ranges - 1 ? ConditionClause.of(Operator.LESS, field,
+                    toKey(lowestKey.add(span.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(ranges))), type)) :
+                    ConditionClause.of(Operator.LESS_OR_EQUAL, field, toKey(highestKey, type)));
+            rangeConditions.add(rangeCondition);
+        }
+        return rangeConditions;
+    }
+
+    /**
+     * Method that checks if the condition has predicates to filter the results
+     * @return true if it has predicates, false if not
+     */
+    protected boolean hasPredicates(){
+        return !clauses.isEmpty();
+    }
+
+    /**
+     * Method that gets the associations to fetch with the results
+     * @return the associations to fetch
+     */
+    protected List<String> getFetches(){
+        return List.copyOf(fetches);
+    }
+
+    /**
+     * Method that checks if the results are read as read only
+     * @return true if the results are read only, false if not
+     */
+    protected boolean isReadOnly(){
+        return readOnly;
+    }
+
+    /**
+     * Method that checks if some association to fetch is (or is inside) a collection
+     * @return true if a collection is fetched, false if not
+     */
+    protected boolean hasCollectionFetch(){
+        return fetches.stream().anyMatch(field -> FieldPath.of(entityType, field).isCollection());
     }
 
     /**
@@ -273,13 +441,116 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the criteria query
      */
     protected CriteriaQuery<T> generate(GenericOrder... genericOrders){
+        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(entityType.getJavaType());
+        Root<T> root = criteriaQuery.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+        Predicate[] predicates = toPredicates(clauses, root, joins, new ArrayList<>());
 
         // order by
-        List<Order> orders = Arrays.stream(genericOrders).map(genericOrder -> genericOrder.isAscending() ?
-                criteriaBuilder.asc(getAttribute(genericOrder.getField(), root)) : criteriaBuilder.desc(getAttribute(genericOrder.getField(), root)))
+        List<Order> orders = Arrays.stream(genericOrders)
+                .map(genericOrder -> toOrder(genericOrder, getAttribute(genericOrder.getField(), root, joins))).toList();
+
+        // the joins of collections repeat the root entity
+        return criteriaQuery.select(root).distinct(hasCollectionJoin(joins)).where(predicates).orderBy(orders);
+    }
+
+    /**
+     * Method that generates the criteria query of a projection, that only selects the fields of the projection
+     * The nested entities of the selected fields are left joined, so the results without them are not lost
+     * @param projection the projection to select
+     * @param genericOrders the generic orders to apply
+     * @return the criteria query, of the records or tuples of the projection
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected CriteriaQuery<?> generate(Projection<?> projection, GenericOrder... genericOrders){
+        CriteriaQuery criteriaQuery = projection.getKind() == Projection.Kind.CONSTRUCTOR ?
+                criteriaBuilder.createQuery(projection.getResultClass()) : criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+
+        // the joins of collections would repeat the selected fields, so these predicates filter the IDs in a subquery
+        boolean hasCollectionField = clauses.stream().flatMap(ConditionClause::allFields)
+                .anyMatch(field -> FieldPath.of(entityType, field).isCollection());
+        Predicate[] predicates = hasCollectionField ? toSubqueryPredicates(criteriaQuery, root, new ArrayList<>()) :
+                toPredicates(clauses, root, joins, new ArrayList<>());
+
+        List<Selection<?>> selections = Arrays.stream(projection.getFields())
+                .<Selection<?>>map(field -> FieldPath.of(entityType, field).resolve(root, joins, JoinType.LEFT).alias(field))
                 .toList();
+        Selection<?> selection = projection.getKind() == Projection.Kind.CONSTRUCTOR ?
+                criteriaBuilder.construct(projection.getResultClass(), selections.toArray(Selection[]::new)) :
+                criteriaBuilder.tuple(selections);
+
+        // order by
+        List<Order> orders = Arrays.stream(genericOrders)
+                .map(genericOrder -> toOrder(genericOrder, getAttribute(genericOrder.getField(), root, joins))).toList();
 
-        return criteriaQuery.select(root).where(predicates.toArray(new Predicate[0])).orderBy(orders);
+        return criteriaQuery.select(selection).where(predicates).orderBy(orders);
+    }
+
+    /**
+     * Method that generates the criteria query of an aggregation of the results, grouped, filtered and ordered by the
+     * database
+     * The orders can be group fields or aliases of aggregates, for example "-sum(age)"
+     * @param aggregation the aggregation
+     * @param genericOrders the generic orders to apply
+     * @return the criteria query of the aggregation
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected CriteriaQuery<?> generate(Aggregation<?> aggregation, GenericOrder... genericOrders){
+        CriteriaQuery criteriaQuery = aggregation.getKind() == Projection.Kind.CONSTRUCTOR ?
+                criteriaBuilder.createQuery(aggregation.getRowClass()) : criteriaBuilder.createTupleQuery();
+        Root<T> root = criteriaQuery.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+        List<ParameterExpression<?>> parameters = new ArrayList<>();
+
+        // the joins of collections would repeat the aggregated rows, so these predicates filter the IDs in a subquery
+        boolean hasCollectionField = clauses.stream().flatMap(ConditionClause::allFields)
+                .anyMatch(field -> FieldPath.of(entityType, field).isCollection());
+        Predicate[] predicates = hasCollectionField ? toSubqueryPredicates(criteriaQuery, root, parameters) :
+                toPredicates(clauses, root, joins, parameters);
+
+        List<Expression<?>> groups = aggregation.getGroupFields().stream()
+                .<Expression<?>>map(field -> FieldPath.of(entityType, field).resolve(root, joins, JoinType.LEFT))
+                .toList();
+        List<Selection<?>> selections = new ArrayList<>();
+        for(int i = 0; i < groups.size(); i++){
+            selections.add(groups.get(i).alias(aggregation.getGroupFields().get(i)));
+        }
+        aggregation.getAggregates().forEach(aggregate -> selections.add(toExpression(aggregate, root, joins).alias(aggregate.alias())));
+        Selection<?> selection = aggregation.getKind() == Projection.Kind.CONSTRUCTOR ?
+                criteriaBuilder.construct(aggregation.getRowClass(), selections.toArray(Selection[]::new)) :
+                criteriaBuilder.tuple(selections);
+
+        // having, with the parameters after the parameters of the condition
+        Predicate[] havings = aggregation.getHavings().stream().map(having -> {
+            Expression expression = toExpression(having.aggregate(), root, joins);
+            Number[] values = having.values();
+            return switch(having.operator()){
+                case EQUAL -> criteriaBuilder.equal(expression, parameter(values[0].getClass(), parameters));
+                case GREATER -> criteriaBuilder.greaterThan(expression, (Expression) parameter(values[0].getClass(), parameters));
+                case GREATER_OR_EQUAL -> criteriaBuilder.greaterThanOrEqualTo(expression, (Expression) parameter(values[0].getClass(), parameters));
+                case LESS -> criteriaBuilder.lessThan(expression, (Expression) parameter(values[0].getClass(), parameters));
+                case LESS_OR_EQUAL -> criteriaBuilder.lessThanOrEqualTo(expression, (Expression) parameter(values[0].getClass(), parameters));
+                case BETWEEN -> criteriaBuilder.between(expression, (Expression) parameter(values[0].getClass(), parameters),
+                        (Expression) parameter(values[1].getClass(), parameters));
+                default -> throw new IllegalStateException("Unexpected operator " + having.operator());
+            };
+        }).toArray(Predicate[]::new);
+
+        // order by
+        List<Order> orders = Arrays.stream(genericOrders).map(genericOrder -> {
+            Aggregation.Aggregate aggregate = Aggregation.Aggregate.tryParse(genericOrder.getField());
+            Expression<?> expression = aggregate != null ? toExpression(aggregate, root, joins) :
+                    FieldPath.of(entityType, genericOrder.getField()).resolve(root, joins, JoinType.LEFT);
+            return toOrder(genericOrder, expression);
+        }).toList();
+
+        criteriaQuery.select(selection).where(predicates).groupBy(groups).orderBy(orders);
+        if(havings.length > 0){
+            criteriaQuery.having(havings);
+        }
+        return criteriaQuery;
     }
 
     /**
@@ -287,187 +558,466 @@ public class GenericCondition<T extends GenericEntity> {
      * @return the count criteria query
      */
     protected CriteriaQuery<Long> generateCount(){
-        return criteriaQueryCount.select(criteriaBuilder.count(rootCount)).where(predicatesCount.toArray(new Predicate[0]));
+        CriteriaQuery<Long> criteriaQueryCount = criteriaBuilder.createQuery(Long.class);
+        Root<T> rootCount = criteriaQueryCount.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+        Predicate[] predicates = toPredicates(clauses, rootCount, joins, new ArrayList<>());
+
+        // the joins of collections repeat the root entity
+        return criteriaQueryCount.select(hasCollectionJoin(joins) ? criteriaBuilder.countDistinct(rootCount) :
+                criteriaBuilder.count(rootCount)).where(predicates);
     }
 
     /**
-     * Method that checks if an entity field is equal to a value
-     * @param field the entity field
-     * @param value the value to compare
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that generates the criteria query of the IDs of the results, without loading the entities
+     * @return the criteria query of the IDs
      */
-    private void equal(String field, Object value, List<Predicate> predicates, Root<T> root){
-        predicates.add(criteriaBuilder.equal(getAttribute(field, root), value));
+    @SuppressWarnings("unchecked")
+    protected CriteriaQuery<Object> generateIds(){
+        CriteriaQuery<Object> criteriaQueryIds = criteriaBuilder.createQuery();
+        Root<T> rootIds = criteriaQueryIds.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+        Predicate[] predicates = toPredicates(clauses, rootIds, joins, new ArrayList<>());
+
+        // the joins of collections repeat the root entity
+        SingularAttribute<? super T, ?> id = entityType.getId(entityType.getIdType().getJavaType());
+        return criteriaQueryIds.select(rootIds.get(id)).distinct(hasCollectionJoin(joins)).where(predicates);
     }
 
     /**
-     * Method that checks if an entity field is not equal to a value
+     * Method that generates the criteria query of the lowest and the highest values of a field in the results
      * @param field the entity field
-     * @param value the value to compare
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * @return the criteria query of the lowest and the highest values
      */
-    private void notEqual(String field, Object value, List<Predicate> predicates, Root<T> root){
-        predicates.add(criteriaBuilder.notEqual(getAttribute(field, root), value));
+    @SuppressWarnings("unchecked")
+    protected CriteriaQuery<Object[]> generateRange(String field){
+        CriteriaQuery<Object[]> criteriaQueryRange = criteriaBuilder.createQuery(Object[].class);
+        Root<T> rootRange = criteriaQueryRange.from(entityType);
+        Map<String, Join<?, ?>> joins = new HashMap<>();
+        Predicate[] predicates = toPredicates(clauses, rootRange, joins, new ArrayList<>());
+        Expression<Comparable<Object>> path = (Expression<Comparable<Object>>) getAttribute(field, rootRange, joins);
+        return criteriaQueryRange.select(criteriaBuilder.array(criteriaBuilder.least(path), criteriaBuilder.greatest(path))).where(predicates);
+    }
+
+    /**
+     * Method that generates the delete criteria query, that deletes all the results of the condition
+     * @return the delete criteria query
+     */
+    protected CriteriaDelete<T> generateDelete(){
+        CriteriaDelete<T> criteriaDelete = criteriaBuilder.createCriteriaDelete(entityType.getJavaType());
+        Root<T> root = criteriaDelete.from(entityType);
+        return criteriaDelete.where(toBulkPredicates(criteriaDelete, root, new ArrayList<>()));
+    }
+
+    /**
+     * Method that generates the update criteria query, that updates some fields of all the results of the condition
+     * The new values are bound after the values of the condition, in the order of the assignments
+     * @param assignments the new values, by field
+     * @return the update criteria query
+     * @throws IllegalArgumentException if some field belongs to another entity
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected CriteriaUpdate<T> generateUpdate(Map<String, ?> assignments){
+        CriteriaUpdate<T> criteriaUpdate = criteriaBuilder.createCriteriaUpdate(entityType.getJavaType());
+        Root<T> root = criteriaUpdate.from(entityType);
+        List<ParameterExpression<?>> parameters = new ArrayList<>();
+        criteriaUpdate.where(toBulkPredicates(criteriaUpdate, root, parameters));
+        for(String field : assignments.keySet()){
+            FieldPath fieldPath = FieldPath.of(entityType, field);
+            // the bulk statements can't join other entities
+            if(fieldPath.requiresJoin()){
+                throw new IllegalArgumentException("The field " + field + " belongs to another entity and can't be updated");
+            }
+            Path path = fieldPath.resolve(root, Map.of());
+            criteriaUpdate.<Object>set(path, (Expression) parameter(parameterType(path), parameters));
+        }
+        return criteriaUpdate;
     }
 
     /**
-     * Method that checks if an entity field is true
-     * @param field the entity field
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that gets the values of the update query, which are the values of the condition followed by the new
+     * values of the fields
+     * @param assignments the new values, by field, in the same order used to generate the update
+     * @return the values of the parameters
      */
-    @SuppressWarnings("unchecked")
-    private void isTrue(String field, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        predicates.add(criteriaBuilder.isTrue(path));
+    protected List<Object> getParameterValues(Map<String, ?> assignments){
+        List<Object> parameterValues = getParameterValues();
+        parameterValues.addAll(assignments.values());
+        return parameterValues;
     }
 
     /**
-     * Method that checks if an entity field is false
-     * @param field the entity field
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that gets the values of the aggregation query, which are the values of the condition followed by the
+     * values of the filters of the aggregates
+     * @param aggregation the aggregation, the same used to generate the query
+     * @return the values of the parameters
      */
-    @SuppressWarnings("unchecked")
-    private void isFalse(String field, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        predicates.add(criteriaBuilder.isFalse(path));
+    protected List<Object> getParameterValues(Aggregation<?> aggregation){
+        List<Object> parameterValues = getParameterValues();
+        parameterValues.addAll(aggregation.getHavingValues());
+        return parameterValues;
     }
 
     /**
-     * Method that checks if an entity field is null
-     * @param field the entity field
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that generates the shape of the condition, which identifies the generated queries without the values
+     * Two conditions with the same shape generate equal queries that only differ in the values of the parameters
+     * @param genericOrders the generic orders to apply
+     * @return the shape of the condition
      */
-    private void isNull(String field, List<Predicate> predicates, Root<T> root){
-        predicates.add(criteriaBuilder.isNull(getAttribute(field, root)));
+    protected String shape(GenericOrder... genericOrders){
+        StringBuilder shape = new StringBuilder();
+        clauses.forEach(clause -> clause.appendShape(shape));
+        shape.append(SHAPE_SEPARATOR).append(GenericOrder.signature(genericOrders));
+        return shape.toString();
     }
 
     /**
-     * Method that checks if an entity field is not null
-     * @param field the entity field
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that describes the condition in a readable way, with its fields, operators and orders, but without the
+     * values, which can contain personal data
+     * @param genericOrders the generic orders to apply
+     * @return the redacted description, for example "where name EQUAL ? and age IN [3 values] order by +name"
      */
-    private void isNotNull(String field, List<Predicate> predicates, Root<T> root){
-        predicates.add(criteriaBuilder.isNotNull(getAttribute(field, root)));
+    protected String describeRedacted(GenericOrder... genericOrders){
+        StringBuilder description = new StringBuilder();
+        if(!clauses.isEmpty()){
+            description.append("where ");
+            ConditionClause.appendRedacted(description, clauses);
+        }
+        if(genericOrders.length > 0){
+            description.append(description.isEmpty() ? "" : " ").append("order by ").append(GenericOrder.signature(genericOrders));
+        }
+        if(!fetches.isEmpty()){
+            description.append(description.isEmpty() ? "" : " ").append("fetch ").append(String.join(",", fetches));
+        }
+        return description.isEmpty() ? "all" : description.toString();
+    }
+
+    /**
+     * Method that describes the condition, with its predicates, values and associations to fetch
+     * Two conditions with the same description get the same results, so the description can be used as the key
+     * of cached results
+     * @return the description of the condition
+     */
+    public ConditionDescription describe(){
+        return new ConditionDescription(entityType.getJavaType(), shape(),
+                Collections.unmodifiableList(getParameterValues()), getFetches());
+    }
+
+    /**
+     * Method that gets the values of the condition, in the order of the parameters of the generated queries
+     * @return the values of the parameters
+     */
+    protected List<Object> getParameterValues(){
+        List<Object> parameterValues = new ArrayList<>();
+        clauses.forEach(clause -> clause.appendValues(parameterValues));
+        return parameterValues;
+    }
+
+    /**
+     * Method that gets the name of a parameter of the generated queries
+     * @param index the index of the parameter
+     * @return the name of the parameter
+     */
+    protected static String parameterName(int index){
+        return PARAMETER_PREFIX + index;
+    }
+
+    /**
+     * Method that adds the seek condition of a keyset pagination, which only accepts the rows placed after the
+     * last row of the previous page, for example (k1 > v1) or (k1 = v1 and k2 > v2) for the orders k1 and k2
+     * The orders must have the null values as the highest values, so the null values of the last row are sought with
+     * is null and is not null predicates, for example (k1 > v1) or (k1 is null) for an ascending order k1
+     * @param genericOrders the generic orders of the pagination, the last one being the tie-breaker
+     * @param lastValues the values of the order fields in the last row of the previous page
+     */
+    protected void seek(GenericOrder[] genericOrders, Object[] lastValues){
+        List<List<ConditionClause>> groups = new ArrayList<>();
+        for(int i = 0; i < genericOrders.length; i++){
+            List<ConditionClause> group = new ArrayList<>();
+            // all the previous order fields are equal to the last row
+            for(int j = 0; j < i; j++){
+                group.add(lastValues[j] == null ? ConditionClause.of(Operator.IS_NULL, genericOrders[j].getField()) :
+                        ConditionClause.of(Operator.EQUAL, genericOrders[j].getField(), lastValues[j]));
+            }
+            // and the current order field is after the last row, where the null values are the highest values
+            String field = genericOrders[i].getField();
+            if(lastValues[i] == null){
+                // no value is after a null in an ascending order, and all the values are after it in a descending order
+                if(!genericOrders[i].isAscending()){
+                    group.add(ConditionClause.of(Operator.IS_NOT_NULL, field));
+                    groups.add(group);
+                }
+            }else if(genericOrders[i].isAscending()){
+                List<ConditionClause> nullGroup = new ArrayList<>(group);
+                group.add(ConditionClause.of(Operator.GREATER, field, lastValues[i]));
+                nullGroup.add(ConditionClause.of(Operator.IS_NULL, field));
+                groups.add(group);
+                groups.add(nullGroup);
+            }else{
+                group.add(ConditionClause.of(Operator.LESS, field, lastValues[i]));
+                groups.add(group);
+            }
+        }
+        clauses.add(ConditionClause.or(groups));
     }
 
     /**
-     * Method that checks if an entity field is greater than another value
-     * @param field the entity field
-     * @param value the value to compare
-     * @param orEqual flag that indicates if it's greater or equal
-     * @param isNumber flag that indicates if the comparison is between a number or string
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that records a predicate, validating its fields against the metamodel of the entity
+     * @param clause the predicate
+     * @throws IllegalArgumentException if some field does not exist in the entity
      */
-    @SuppressWarnings("unchecked")
-    private void greater(String field, Object value, boolean orEqual, boolean isNumber, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        if(!isNumber){
-            predicates.add(orEqual ? criteriaBuilder.greaterThanOrEqualTo(path, (String) value) :
-                    criteriaBuilder.greaterThan(path, (String) value));
-        }else{
-            predicates.add(orEqual ? criteriaBuilder.ge(path, (Number) value) :
-                    criteriaBuilder.gt(path, (Number) value));
+    private void add(ConditionClause clause){
+        for(String field : clause.getFields()){
+            FieldPath.of(entityType, field);
+        }
+        clauses.add(clause);
+    }
+
+    /**
+     * Method that renders the recorded predicates into the predicates of a bulk (delete or update) query
+     * The bulk queries can't join other entities, so when some field needs joins the predicates are rendered into a
+     * subquery that selects the IDs of the results
+     * @param criteria the bulk query
+     * @param root the root entity of the bulk query
+     * @param parameters the parameters already created in the query
+     * @return the criteria predicates
+     */
+    private Predicate[] toBulkPredicates(CommonAbstractCriteria criteria, Root<T> root, List<ParameterExpression<?>> parameters){
+        boolean requiresJoin = clauses.stream().flatMap(ConditionClause::allFields)
+                .anyMatch(field -> FieldPath.of(entityType, field).requiresJoin());
+        return requiresJoin ? toSubqueryPredicates(criteria, root, parameters) :
+                toPredicates(clauses, root, new HashMap<>(), parameters);
+    }
+
+    /**
+     * Method that renders the recorded predicates into a subquery that selects the IDs of the results, so the joins
+     * of the predicates don't affect the query
+     * @param criteria the query
+     * @param root the root entity of the query
+     * @param parameters the parameters already created in the query
+     * @return the criteria predicates
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate[] toSubqueryPredicates(CommonAbstractCriteria criteria, Root<T> root, List<ParameterExpression<?>> parameters){
+        SingularAttribute<? super T, ?> id = entityType.getId(entityType.getIdType().getJavaType());
+        Subquery subquery = criteria.subquery(id.getJavaType());
+        Root<T> subqueryRoot = subquery.from(entityType);
+        subquery.select(subqueryRoot.get(id)).where(toPredicates(clauses, subqueryRoot, new HashMap<>(), parameters));
+        return new Predicate[]{root.get(id).in(subquery)};
+    }
+
+    /**
+     * Method that renders the recorded predicates into criteria predicates
+     * @param clauses the recorded predicates
+     * @param root the root entity to get the fields
+     * @param joins the joins already created in the query, by field
+     * @param parameters the parameters already created in the query
+     * @return the criteria predicates
+     */
+    private Predicate[] toPredicates(List<ConditionClause> clauses, Root<T> root, Map<String, Join<?, ?>> joins,
+                                     List<ParameterExpression<?>> parameters){
+        return clauses.stream().map(clause -> toPredicate(clause, root, joins, parameters)).toArray(Predicate[]::new);
+    }
+
+    /**
+     * Method that renders a recorded predicate into a criteria predicate, binding its values through parameters
+     * @param clause the recorded predicate
+     * @param root the root entity to get the fields
+     * @param joins the joins already created in the query, by field
+     * @param parameters the parameters already created in the query
+     * @return the criteria predicate
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate toPredicate(ConditionClause clause, Root<T> root, Map<String, Join<?, ?>> joins,
+                                  List<ParameterExpression<?>> parameters){
+        switch(clause.getOperator()){
+            case OR -> {
+                return criteriaBuilder.or(clause.getGroups().stream()
+                        .map(group -> criteriaBuilder.and(toPredicates(group, root, joins, parameters))).toArray(Predicate[]::new));
+            }
+            case DISJUNCTION_LIKE -> {
+                ParameterExpression<String> value = parameter(String.class, parameters);
+                return criteriaBuilder.or(Arrays.stream(clause.getFields())
+                        .map(field -> criteriaBuilder.like((Expression) getAttribute(field, root, joins), value)).toArray(Predicate[]::new));
+            }
+            default -> {
+                Expression path = getAttribute(clause.getFields()[0], root, joins);
+                Class<?> type = parameterType(path);
+                return switch(clause.getOperator()){
+                    case EQUAL -> criteriaBuilder.equal(path, parameter(type, parameters));
+                    case NOT_EQUAL -> criteriaBuilder.notEqual(path, parameter(type, parameters));
+                    case IS_TRUE -> criteriaBuilder.isTrue(path);
+                    case IS_FALSE -> criteriaBuilder.isFalse(path);
+                    case IS_NULL -> criteriaBuilder.isNull(path);
+                    case IS_NOT_NULL -> criteriaBuilder.isNotNull(path);
+                    case GREATER -> criteriaBuilder.greaterThan(path, (Expression) parameter(type, parameters));
+                    case GREATER_OR_EQUAL -> criteriaBuilder.greaterThanOrEqualTo(path, (Expression) parameter(type, parameters));
+                    case LESS -> criteriaBuilder.lessThan(path, (Expression) parameter(type, parameters));
+                    case LESS_OR_EQUAL -> criteriaBuilder.lessThanOrEqualTo(path, (Expression) parameter(type, parameters));
+                    case BETWEEN -> criteriaBuilder.between(path, (Expression) parameter(type, parameters),
+                            (Expression) parameter(type, parameters));
+                    case IN -> ((List<?>) clause.getValues()[0]).isEmpty() ? criteriaBuilder.disjunction() :
+                            path.in(parameter(Collection.class, parameters));
+                    case LIKE -> criteriaBuilder.like(path, parameter(String.class, parameters));
+                    default -> throw new IllegalStateException("Unexpected operator " + clause.getOperator());
+                };
+            }
         }
     }
 
     /**
-     * Method that checks if an entity field is less than another value
-     * @param field the entity field
-     * @param value the value to compare
-     * @param orEqual flag that indicates if it's less or equal
-     * @param isNumber flag that indicates if the comparison is between a number or string
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that gets the type of the parameters of a predicate, which is the type of the field
+     * @param path the field
+     * @return the type of the parameters
      */
-    @SuppressWarnings("unchecked")
-    private void less(String field, Object value, boolean orEqual, boolean isNumber, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        if(!isNumber){
-            predicates.add(orEqual ? criteriaBuilder.lessThanOrEqualTo(path, (String) value) :
-                    criteriaBuilder.lessThan(path, (String) value));
-        }else{
-            predicates.add(orEqual ? criteriaBuilder.le(path, (Number) value) :
-                    criteriaBuilder.lt(path, (Number) value));
+    private Class<?> parameterType(Expression<?> path){
+        return MethodType.methodType(path.getJavaType()).wrap().returnType();
+    }
+
+    /**
+     * Method that creates the next parameter of a query
+     * @param type the type of the parameter
+     * @param parameters the parameters already created in the query
+     * @return the parameter
+     */
+    private <P> ParameterExpression<P> parameter(Class<P> type, List<ParameterExpression<?>> parameters){
+        ParameterExpression<P> parameter = criteriaBuilder.parameter(type, parameterName(parameters.size()));
+        parameters.add(parameter);
+        return parameter;
+    }
+
+    /**
+     * Method that generates the order of an expression, with the null values placed explicitly if the order has the
+     * null values as the highest values
+     * @param genericOrder the generic order
+     * @param expression the ordered expression
+     * @return the order
+     */
+    private Order toOrder(GenericOrder genericOrder, Expression<?> expression){
+        if(!genericOrder.isNullsHighest()){
+            return genericOrder.isAscending() ? criteriaBuilder.asc(expression) : criteriaBuilder.desc(expression);
         }
+        return genericOrder.isAscending() ? criteriaBuilder.asc(expression, Nulls.LAST) : criteriaBuilder.desc(expression, Nulls.FIRST);
     }
 
     /**
-     * Method that checks if an entity field is between another two numbers
-     * @param field the entity field
-     * @param value1 number one
-     * @param value2 number two
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that gets the field of an entity and automatically do the joins between nested entities
+     * The field is compiled against the metamodel once per entity, and the joins are reused inside the query
+     * @param field the field to get
+     * @param root the root entity
+     * @param joins the joins already created in the query, by field
+     * @return the field
      */
-    @SuppressWarnings("unchecked")
-    private void between(String field, String value1, String value2, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        predicates.add(criteriaBuilder.between(path, value1, value2));
+    private Path<?> getAttribute(String field, Root<T> root, Map<String, Join<?, ?>> joins){
+        return FieldPath.of(entityType, field).resolve(root, joins);
     }
 
     /**
-     * Method that checks if an entity field is in a list of values
-     * @param field the entity field
-     * @param values list of values
-     * @param predicates the conditions to add a new one
+     * Method that renders an aggregate into a criteria expression
+     * @param aggregate the aggregate
      * @param root the root entity to get the field
+     * @param joins the joins already created in the query, by field
+     * @return the criteria expression
      */
-    private void in(String field, List<Object> values, List<Predicate> predicates, Root<T> root){
-        predicates.add(getAttribute(field, root).in(values));
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Expression<?> toExpression(Aggregation.Aggregate aggregate, Root<T> root, Map<String, Join<?, ?>> joins){
+        if(aggregate.function() == Aggregation.Function.COUNT){
+            return criteriaBuilder.count(root);
+        }
+        Expression path = FieldPath.of(entityType, aggregate.field()).resolve(root, joins, JoinType.LEFT);
+        return switch(aggregate.function()){
+            case SUM -> sum(path);
+            case AVG -> criteriaBuilder.avg(path);
+            case MIN -> criteriaBuilder.least(path);
+            case MAX -> criteriaBuilder.greatest(path);
+            case COUNT_DISTINCT -> criteriaBuilder.countDistinct(path);
+            default -> throw new IllegalStateException("Unexpected function " + aggregate.function());
+        };
     }
 
     /**
-     * Method that checks if an entity field is like to a value
-     * @param field the entity field
-     * @param value the value to compare
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that renders the sum of a field, with the types of the sums of the queries: longs for the integer fields,
+     * doubles for the floating point fields, and the type of the field for the big numbers
+     * @param path the field
+     * @return the criteria expression of the sum
      */
     @SuppressWarnings("unchecked")
-    private void like(String field, Object value, List<Predicate> predicates, Root<T> root){
-        Path path = getAttribute(field, root);
-        predicates.add(criteriaBuilder.like(path, LIKE_SEPARATOR + value + LIKE_SEPARATOR));
+    private Expression<?> sum(Expression<? extends Number> path){
+        Class<?> type = parameterType(path);
+        if(type == Integer.class || type == Short.class || type == Byte.class){
+            return criteriaBuilder.sumAsLong((Expression<Integer>) path);
+        }
+        if(type == Float.class){
+            return criteriaBuilder.sumAsDouble((Expression<Float>) path);
+        }
+        return criteriaBuilder.sum(path);
     }
 
     /**
-     * Method that checks if some entity fields are like to a value
-     * @param value the value to compare
-     * @param fields the entity fields
-     * @param predicates the conditions to add a new one
-     * @param root the root entity to get the field
+     * Method that gets the position of the largest in list that can be split into chunks
+     * @return the position of the predicate, or -1 if there is no in list larger than the chunk size that can be split
      */
-    @SuppressWarnings("unchecked")
-    private void disjunctionLike(Object value, List<Predicate> predicates, Root<T> root, String... fields){
-        List<Predicate> orCondition = new ArrayList<>();
-        for(Object field : Arrays.stream(fields).toArray()){
-            Path path = getAttribute(field.toString(), root);
-            orCondition.add(criteriaBuilder.like(path, LIKE_SEPARATOR + value + LIKE_SEPARATOR));
+    private int getSplitClause(){
+        int splitClause = -1;
+        int splitSize = ConditionClause.IN_LIST_CHUNK_SIZE;
+        for(int i = 0; i < clauses.size(); i++){
+            ConditionClause clause = clauses.get(i);
+            if(clause.getOperator() == Operator.IN && ((List<?>) clause.getValues()[0]).size() > splitSize
+                    && !FieldPath.of(entityType, clause.getFields()[0]).isCollection()){
+                splitClause = i;
+                splitSize = ((List<?>) clause.getValues()[0]).size();
+            }
         }
-        predicates.add(criteriaBuilder.or(orCondition.toArray(new Predicate[0])));
+        return splitClause;
     }
 
     /**
-     * Method that recursively gets the field of an entity and automatically do the joins between nested entities
-     * @param field the field to get
-     * @param path the entity
-     * @return the field
+     * Method that gets the in lists of a recorded predicate, including the ones of its groups
+     * @param clause the recorded predicate
+     * @return the values of the in lists
+     */
+    private static Stream<List<?>> inLists(ConditionClause clause){
+        return clause.getOperator() == Operator.IN ? Stream.of((List<?>) clause.getValues()[0]) :
+                clause.getGroups().stream().flatMap(List::stream).flatMap(GenericCondition::inLists);
+    }
+
+    /**
+     * Method that gets the type of a key field, with the primitive types wrapped
+     * @param field the entity field
+     * @return the type of the field
      */
-    private Path<?> getAttribute(String field, Path<?> path){
+    private Class<?> keyType(String field){
+        return MethodType.methodType(FieldPath.of(entityType, field).getJavaType()).wrap().returnType();
+    }
 
-        // if it's at the end of the nested fields
-        if(field.isBlank()){
-            return path;
+    /**
+     * Method that converts a value of a key into the type of the key field, so that it can be bound to its parameters
+     * @param key the value of the key
+     * @param type the type of the key field
+     * @return the converted value
+     */
+    private static Object toKey(BigInteger key, Class<?> type){
+        if(type == Long.class){
+            return key.longValueExact();
+        }
+        if(type == Integer.class){
+            return key.intValueExact();
         }
-        // gets the next nested fields
-        String[] innerFields = field.split("\\" + PROPERTY_SEPARATOR);
-        String firstField = innerFields[0];
-        return getAttribute(field.substring(Math.min(firstField.length() + 1, field.length())), path.get(firstField));
+        if(type == Short.class){
+            return key.shortValueExact();
+        }
+        if(type == Byte.class){
+            return key.byteValueExact();
+        }
+        return key;
+    }
+
+    /**
+     * Method that checks if a query has joins of collections
+     * @param joins the joins created in the query, by field
+     * @return true if some join is a collection, false if not
+     */
+    private static boolean hasCollectionJoin(Map<String, Join<?, ?>> joins){
+        return joins.values().stream().anyMatch(join -> join instanceof PluralJoin<?, ?, ?>);
     }
 }
@@ -1,18 +1,31 @@
 package lf.sol.genericrepository.repository;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
 @Getter
 public class GenericOrder {
 
     private final boolean ascending;
     private final String field;
+    @Getter(AccessLevel.PACKAGE)
+    private final boolean nullsHighest;
     private static final String DASH_ORDER = "-";
     private static final int DASH_ORDER_INDEX = 1;
+    private static final String NULLS_HIGHEST = " nulls highest";
 
     private GenericOrder(boolean ascending, String field) {
+        this(ascending, field, false);
+    }
+
+    private GenericOrder(boolean ascending, String field, boolean nullsHighest) {
         this.ascending = ascending;
         this.field = field;
+        this.nullsHighest = nullsHighest;
     }
 
     /**
@@ -46,4 +59,34 @@ public class GenericOrder {
         }
         return genericOrders;
     }
+
+    /**
+     * Method that generates the same order with the null values as the highest values in every database (last in an
+     * ascending order and first in a descending order), so that a keyset pagination knows where the null values are
+     * @return the order with the null values as the highest values
+     */
+    GenericOrder withNullsHighest(){
+        return new GenericOrder(ascending, field, true);
+    }
+
+    /**
+     * Method that compiles generic orders into a comparator of the entities in memory, so that the entities already
+     * loaded can be sorted without queries
+     * The null values are lower than the other values
+     * @param genericOrders the generic orders
+     * @return the comparator of the entities
+     */
+    public static <T> Comparator<T> toComparator(GenericOrder... genericOrders){
+        return InMemoryCondition.toComparator(genericOrders);
+    }
+
+    /**
+     * Method that generates the signature of generic orders, with the direction and field of each order
+     * @param genericOrders the generic orders
+     * @return the signature, for example "+designation,-id"
+     */
+    static String signature(GenericOrder... genericOrders){
+        return Arrays.stream(genericOrders).map(genericOrder -> (genericOrder.isAscending() ? "+" : "-") + genericOrder.getField()
+                + (genericOrder.isNullsHighest() ? NULLS_HIGHEST : "")).collect(Collectors.joining(","));
+    }
 }
@@ -1,24 +1,167 @@
 package lf.sol.genericrepository.repository;
 
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.Graph;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.EntityType;
 import lf.sol.genericrepository.model.GenericEntity;
 import lf.sol.genericrepository.exception.NoCountPaginationException;
+import lf.sol.genericrepository.exception.WrongContinuationTokenException;
 import lf.sol.genericrepository.exception.WrongPaginationParamsException;
+import lombok.AccessLevel;
+import lombok.Getter;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class GenericRepository<T extends GenericEntity, Object> implements IGenericRepository<T, Object> {
 
+    private static final ExecutorService COUNT_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int MAX_QUERY_TEMPLATES = 512;
+    private static final String COUNT_SHAPE_PREFIX = "count ";
+    private static final String IDS_SHAPE_PREFIX = "ids ";
+    private static final String RANGE_SHAPE_PREFIX = "range ";
+    private static final String AGGREGATION_SHAPE_PREFIX = "aggregation ";
+    private static final String LOAD_GRAPH_HINT = "jakarta.persistence.loadgraph";
+    private static final String[] READ_ONLY_HINTS = {"org.hibernate.readOnly", "eclipselink.read-only"};
+    private static final String CACHE_RETRIEVE_MODE_HINT = "jakarta.persistence.cache.retrieveMode";
+    private static final String CACHE_STORE_MODE_HINT = "jakarta.persistence.cache.storeMode";
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final String HIBERNATE_FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+    private static final String HIBERNATE_SESSION_CLASS = "org.hibernate.Session";
+    private static final String HIBERNATE_CANCEL_QUERY_METHOD = "cancelQuery";
+    private static final String ECLIPSELINK_FETCH_SIZE_HINT = "eclipselink.jdbc.fetch-size";
+    private static final String HIBERNATE_PACKAGE = "org.hibernate.";
+    private static final String ECLIPSELINK_PACKAGE = "org.eclipse.persistence.";
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_ID_CHUNK_SIZE = 1000;
+    private static final String[] BATCH_SIZE_PROPERTIES = {"hibernate.jdbc.batch_size", "eclipselink.jdbc.batch-writing.size"};
+
     @PersistenceContext
     private EntityManager entityManager;
+    @Getter(AccessLevel.PACKAGE)
     private final Class<T> genericEntityClass;
+    private final Map<String, CriteriaQuery<?>> queryTemplates;
+    @Getter
+    private final EntityCache entityCache;
+    @Getter
+    private final CountCache countCache;
+    private final CountEstimator countEstimator;
+    @Getter
+    private final ResultCache resultCache;
+    private final RepositoryMetrics metrics;
+    @Getter
+    private final ReadCoalescer readCoalescer;
+    private final Semaphore countPermits;
 
     public GenericRepository(Class<T> genericEntityClass) {
+        this(genericEntityClass, (EntityCache) null);
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityManager entityManager) {
+        this(genericEntityClass);
+        this.entityManager = entityManager;
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache) {
+        this(genericEntityClass, entityCache, null, null, null);
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache, CountCache countCache, CountEstimator countEstimator) {
+        this(genericEntityClass, entityCache, countCache, countEstimator, null);
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache, CountCache countCache, CountEstimator countEstimator,
+                             ResultCache resultCache) {
+        this(genericEntityClass, entityCache, countCache, countEstimator, resultCache, null);
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache, CountCache countCache, CountEstimator countEstimator,
+                             ResultCache resultCache, RepositoryMetrics metrics) {
+        this(genericEntityClass, entityCache, countCache, countEstimator, resultCache, metrics, null);
+    }
+
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache, CountCache countCache, CountEstimator countEstimator,
+                             ResultCache resultCache, RepositoryMetrics metrics, ReadCoalescer readCoalescer) {
+        this(genericEntityClass, entityCache, countCache, countEstimator, resultCache, metrics, readCoalescer, 0);
+    }
+
+    /**
+     * Constructor of a repository that limits the counts running at the same time as the page queries, each one
+     * holding a connection of its own, so that the concurrent counts can't exhaust the connection pool
+     * Without a free permit, the count of a concurrent pagination runs after the page query
+     * @param maxConcurrentCounts the maximum number of concurrent counts, or 0 for no limit
+     */
+    public GenericRepository(Class<T> genericEntityClass, EntityCache entityCache, CountCache countCache, CountEstimator countEstimator,
+                             ResultCache resultCache, RepositoryMetrics metrics, ReadCoalescer readCoalescer, int maxConcurrentCounts) {
+        if(maxConcurrentCounts < 0){
+            throw new IllegalArgumentException("The maximum number of concurrent counts can't be negative");
+        }
         this.genericEntityClass = genericEntityClass;
+        this.queryTemplates = new ConcurrentHashMap<>();
+        this.entityCache = entityCache;
+        this.countCache = countCache;
+        this.countEstimator = countEstimator;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+        this.readCoalescer = readCoalescer;
+        this.countPermits = maxConcurrentCounts > 0 ? new Semaphore(maxConcurrentCounts) : null;
+    }
+
+    /**
+     * Constructor of a repository bound to another entity manager, that shares the query templates, caches,
+     * estimator, metrics, read coalescer and concurrent count permits of an existing repository
+     * @param repository the existing repository
+     * @param entityManager the entity manager
+     */
+    GenericRepository(GenericRepository<T, Object> repository, EntityManager entityManager) {
+        this.genericEntityClass = repository.genericEntityClass;
+        this.queryTemplates = repository.queryTemplates;
+        this.entityCache = repository.entityCache;
+        this.countCache = repository.countCache;
+        this.countEstimator = repository.countEstimator;
+        this.resultCache = repository.resultCache;
+        this.metrics = repository.metrics;
+        this.readCoalescer = repository.readCoalescer;
+        this.countPermits = repository.countPermits;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Method that sets the key of the signatures of the continuation tokens of the keyset paginations
+     * Without a key, the tokens are signed with a random key of the JVM, so they are only accepted by the instance
+     * that created them, and the instances that receive the tokens of each other must share a key
+     * @param key the key, with at least 32 bytes
+     * @throws IllegalArgumentException if the key has less than 32 bytes
+     */
+    public static void setContinuationTokenKey(byte[] key) {
+        ContinuationToken.setKey(key);
     }
 
     @Override
@@ -31,85 +174,544 @@ public class GenericRepository<T extends GenericEntity, Object> implements IGene
         return initCondition(true);
     }
 
+    @Override
+    public GenericCondition<T> initCondition(ConditionSpec<T> conditionSpec) {
+        return initCondition(false).and(conditionSpec);
+    }
+
+    @Override
+    public GenericCondition<T> initConditionWithCount(ConditionSpec<T> conditionSpec) {
+        return initCondition(true).and(conditionSpec);
+    }
+
+    @Override
+    public void validateFields(String... fields) {
+        EntityType<T> entityType = getEntityType();
+        for(String field : fields){
+            FieldPath.of(entityType, field);
+        }
+    }
+
     @Override
     public T saveOrRefresh(T entity) {
-        return entityManager.merge(entity);
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            T savedEntity = QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.merge(entity));
+            invalidate(savedEntity);
+            QueryTimer.rows(1);
+            failed = false;
+            return savedEntity;
+        }finally{
+            stopTimer(queryTimer, "saveOrRefresh", failed, null);
+        }
     }
 
     @Override
     public void saveNew(T entity) {
-        entityManager.persist(entity);
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.persist(entity));
+            invalidate(entity);
+            QueryTimer.rows(1);
+            failed = false;
+        }finally{
+            stopTimer(queryTimer, "saveNew", failed, null);
+        }
+    }
+
+    @Override
+    public BatchReport saveAllNew(Iterable<T> entities) {
+        return saveAllNew(entities, getProviderBatchSize());
+    }
+
+    @Override
+    public BatchReport saveAllNew(Iterable<T> entities, int batchSize) {
+        BatchReport batchReport = initBatchReport(batchSize);
+        saveInBatches(entities, entityManager::persist, batchReport);
+        return batchReport;
+    }
+
+    @Override
+    public BatchReport saveOrRefreshAll(Iterable<T> entities) {
+        return saveOrRefreshAll(entities, getProviderBatchSize(), false);
+    }
+
+    @Override
+    public BatchReport saveOrRefreshAll(Iterable<T> entities, int batchSize, boolean orderInsertsAndUpdates) {
+        BatchReport batchReport = initBatchReport(batchSize);
+        if(!orderInsertsAndUpdates){
+            saveInBatches(entities, entityManager::merge, batchReport);
+            return batchReport;
+        }
+
+        // the new entities are inserted first and then the existing ones are updated
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        List<T> newEntities = new ArrayList<>();
+        List<T> existingEntities = new ArrayList<>();
+        for(T entity : entities){
+            (persistenceUnitUtil.getIdentifier(entity) == null ? newEntities : existingEntities).add(entity);
+        }
+        saveInBatches(newEntities, entityManager::persist, batchReport);
+        saveInBatches(existingEntities, entityManager::merge, batchReport);
+        return batchReport;
+    }
+
+    @Override
+    public void upsert(T entity) {
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            UpsertStatement upsertStatement = getUpsertStatement();
+            java.lang.Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+            if(id == null){
+                QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.persist(entity));
+            }else if(upsertStatement == null){
+                QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.merge(entity));
+            }else{
+                QueryTimer.measure(QueryPhase.EXECUTE, () -> executeUpsert(upsertStatement, List.of(entity)));
+                entityManager.detach(entityManager.getReference(genericEntityClass, id));
+            }
+            invalidate(entity);
+            QueryTimer.rows(1);
+            failed = false;
+        }finally{
+            stopTimer(queryTimer, "upsert", failed, null);
+        }
+    }
+
+    @Override
+    public BatchReport upsertAll(Iterable<T> entities) {
+        return upsertAll(entities, getProviderBatchSize());
+    }
+
+    @Override
+    public BatchReport upsertAll(Iterable<T> entities, int batchSize) {
+        BatchReport batchReport = initBatchReport(batchSize);
+        UpsertStatement upsertStatement = getUpsertStatement();
+        if(upsertStatement == null){
+            saveInBatches(entities, entityManager::merge, batchReport);
+            return batchReport;
+        }
+
+        // the new entities have no ID to upsert by, so they are saved as new entities after the others
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        List<T> newEntities = new ArrayList<>();
+        List<T> batch = new ArrayList<>();
+        long batchStart = System.nanoTime();
+        for(T entity : entities){
+            if(persistenceUnitUtil.getIdentifier(entity) == null){
+                newEntities.add(entity);
+                continue;
+            }
+            batch.add(entity);
+            if(batch.size() == batchSize){
+                upsertBatch(upsertStatement, batch, batchStart, batchReport);
+                batch.clear();
+                batchStart = System.nanoTime();
+            }
+        }
+        if(!batch.isEmpty()){
+            upsertBatch(upsertStatement, batch, batchStart, batchReport);
+        }
+        saveInBatches(newEntities, entityManager::persist, batchReport);
+        return batchReport;
     }
 
     @Override
     public void remove(T entity) {
-        entityManager.remove(entity);
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.remove(entity));
+            invalidate(entity);
+            QueryTimer.rows(1);
+            failed = false;
+        }finally{
+            stopTimer(queryTimer, "remove", failed, null);
+        }
+    }
+
+    @Override
+    public int deleteWhere(GenericCondition<T> genericCondition) {
+        invalidateAll();
+        int deleted = 0;
+        for(GenericCondition<T> chunk : splitInList(genericCondition)){
+            deleted += bind(entityManager.createQuery(chunk.generateDelete()), chunk.getParameterValues()).executeUpdate();
+        }
+        return deleted;
+    }
+
+    @Override
+    public int updateWhere(GenericCondition<T> genericCondition, Map<String, ?> assignments) {
+        if(assignments.isEmpty()){
+            throw new IllegalArgumentException("There are no fields to update");
+        }
+
+        // the same order of the assignments is used to generate the query and to bind the values
+        Map<String, ?> orderedAssignments = new LinkedHashMap<>(assignments);
+        invalidateAll();
+        int updated = 0;
+        for(GenericCondition<T> chunk : splitInList(genericCondition)){
+            updated += bind(entityManager.createQuery(chunk.generateUpdate(orderedAssignments)),
+                    chunk.getParameterValues(orderedAssignments)).executeUpdate();
+        }
+        return updated;
     }
 
     @Override
     public boolean existsById(Object id) {
-        return getById(id) != null;
+        if(entityCache != null && !WriteVersions.isWriting(entityManager) && entityCache.contains(id)){
+            return true;
+        }
+        EntityType<T> entityType = getEntityType();
+        String idField = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        return exists(initCondition().equal(idField, id));
+    }
+
+    @Override
+    public boolean exists(GenericCondition<T> genericCondition) {
+        return countUpTo(genericCondition, 1) > 0;
+    }
+
+    @Override
+    public long countUpTo(GenericCondition<T> genericCondition, int cap) {
+        if(cap < 0){
+            throw new IllegalArgumentException("The cap of the count can't be less than zero");
+        }
+        if(cap == 0){
+            return 0;
+        }
+        long count = 0;
+        for(GenericCondition<T> chunk : splitInList(genericCondition)){
+            CriteriaQuery<java.lang.Object> criteriaQueryIds = template(IDS_SHAPE_PREFIX + chunk.shape(), chunk::generateIds);
+            count += bind(entityManager.createQuery(criteriaQueryIds), chunk.getParameterValues())
+                    .setMaxResults((int) (cap - count)).getResultList().size();
+            if(count >= cap){
+                break;
+            }
+        }
+        return count;
     }
 
     @Override
     public T getById(Object id) {
-        return entityManager.find(genericEntityClass, id);
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            T entity = readCoalescer == null ? findById(id) : readCoalescer.read(new ReadCoalescer.IdKey(genericEntityClass, id),
+                    getWriteVersion(), () -> findById(id), this::share, this::restore);
+            QueryTimer.rows(entity != null ? 1 : 0);
+            failed = false;
+            return entity;
+        }finally{
+            stopTimer(queryTimer, "getById", failed, () -> "by ID");
+        }
+    }
+
+    @Override
+    public List<T> getByIds(Collection<Object> ids) {
+        return getByIds(ids, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    @Override
+    public List<T> getByIds(Collection<Object> ids, int chunkSize) {
+        Map<Object, T> entities = getByIdsAsMap(ids, chunkSize);
+        List<T> results = new ArrayList<>(ids.size());
+        for(Object id : ids){
+            T entity = entities.get(id);
+            if(entity != null){
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public Map<Object, T> getByIdsAsMap(Collection<Object> ids) {
+        return getByIdsAsMap(ids, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    @Override
+    public Map<Object, T> getByIdsAsMap(Collection<Object> ids, int chunkSize) {
+        if(chunkSize <= 0){
+            throw new IllegalArgumentException("The chunk size must be greater than zero");
+        }
+
+        // the entities already loaded in the persistence context or cached are not read again, and without a probe
+        // of the persistence context the query returns the instances already loaded instead of creating new ones
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        PersistenceContextProbe probe = PersistenceContextProbe.of(entityManager, genericEntityClass);
+        boolean cached = entityCache != null && !WriteVersions.isWriting(entityManager);
+        Map<Object, T> entities = new LinkedHashMap<>();
+        List<java.lang.Object> missingIds = new ArrayList<>();
+        for(Object id : new LinkedHashSet<>(ids)){
+            T entity = cached ? entityCache.get(id, genericEntityClass) : null;
+            if(entity == null && probe != null){
+                entity = probe.getLoaded(id, genericEntityClass);
+            }
+            entities.put(id, entity);
+            if(entity == null){
+                missingIds.add(id);
+            }
+        }
+
+        // the other entities are read in chunks, to stay under the parameter limits of the database
+        String idField = getEntityType().getId(getEntityType().getIdType().getJavaType()).getName();
+        long writeVersion = cached ? WriteVersions.of(genericEntityClass) : WriteVersions.PENDING;
+        long cacheVersion = cached ? entityCache.getVersion() : 0;
+        for(int start = 0; start < missingIds.size(); start += chunkSize){
+            List<java.lang.Object> chunk = missingIds.subList(start, Math.min(start + chunkSize, missingIds.size()));
+            for(T entity : getAll(initCondition().in(idField, chunk))){
+                @SuppressWarnings("unchecked")
+                Object id = (Object) persistenceUnitUtil.getIdentifier(entity);
+                entities.put(id, entity);
+                if(cached){
+                    cacheEntity(id, entity, writeVersion, cacheVersion);
+                }
+            }
+        }
+
+        entities.values().removeIf(Objects::isNull);
+        return entities;
+    }
+
+    @Override
+    public Stream<T> stream(GenericOrder... genericOrders) {
+        return stream(initCondition(), genericOrders);
+    }
+
+    @Override
+    public Stream<T> stream(GenericCondition<T> genericCondition, GenericOrder... genericOrders) {
+        return stream(genericCondition, DEFAULT_CHUNK_SIZE, genericOrders);
+    }
+
+    @Override
+    public Stream<T> stream(GenericCondition<T> genericCondition, int chunkSize, GenericOrder... genericOrders) {
+        if(chunkSize <= 0){
+            throw new IllegalArgumentException("The chunk size must be greater than zero");
+        }
+
+        TypedQuery<T> query = createQuery(genericCondition, genericOrders);
+        String fetchSizeHint = getFetchSizeHint();
+        if(fetchSizeHint != null){
+            query.setHint(fetchSizeHint, chunkSize);
+        }
+        Stream<T> results = query.getResultStream();
+        DetachingSpliterator<T> spliterator = new DetachingSpliterator<>(results.iterator(), entityManager, chunkSize);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            spliterator.detachChunk();
+            results.close();
+        });
     }
 
     @Override
     public Long total() {
-        return entityManager.createQuery(initCondition(true).generateCount()).getSingleResult();
+        return total(initCondition(true));
     }
 
     @Override
     public Long total(GenericCondition<T> genericCondition) {
-        return genericCondition.doCount ? entityManager.createQuery(genericCondition.generateCount()).getSingleResult() : 0L;
+        if(!genericCondition.doCount){
+            return 0L;
+        }
+        String countShape = COUNT_SHAPE_PREFIX + genericCondition.shape();
+        List<?> parameterValues = genericCondition.getParameterValues();
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            long writeVersion = getWriteVersion();
+            Long cachedCount = getCachedCount(countShape, parameterValues, writeVersion);
+            Long count = cachedCount != null ? cachedCount : count(genericCondition, entityManager, writeVersion);
+            QueryTimer.rows(1);
+            failed = false;
+            return count;
+        }finally{
+            stopTimer(queryTimer, "total", failed, genericCondition::describeRedacted);
+        }
+    }
+
+    @Override
+    public Long estimatedTotal() {
+        Long estimatedCount = estimate();
+        return estimatedCount != null ? estimatedCount : total();
     }
 
     @Override
     public List<T> getAll(GenericOrder... genericOrders) {
-        return getAll(initCondition());
+        return getAll(initCondition(), genericOrders);
     }
 
     @Override
     public List<T> getAll(GenericCondition<T> genericCondition, GenericOrder... genericOrders){
-        return entityManager.createQuery(genericCondition.generate(genericOrders)).getResultList();
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            // the ordered results are read with one query, so that the database orders them with its collation and
+            // null ordering, and only the unordered results are merged from the queries of the chunks
+            List<GenericCondition<T>> chunks = genericOrders.length > 0 ? List.of(genericCondition) : splitInList(genericCondition);
+            List<T> results = new ArrayList<>();
+            for(GenericCondition<T> chunk : chunks){
+                results.addAll(QueryTimer.measure(QueryPhase.EXECUTE, createQuery(chunk, genericOrders)::getResultList));
+            }
+            QueryTimer.rows(results.size());
+            detachIfReadOnly(genericCondition, results);
+            failed = false;
+            return results;
+        }finally{
+            stopTimer(queryTimer, "getAll", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
+    }
+
+    @Override
+    public <P> List<P> getAll(GenericCondition<T> genericCondition, Projection<P> projection, GenericOrder... genericOrders){
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            List<P> results = getProjection(createQuery(genericCondition, projection, genericOrders), projection);
+            QueryTimer.rows(results.size());
+            failed = false;
+            return results;
+        }finally{
+            stopTimer(queryTimer, "getAll", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
+    }
+
+    @Override
+    public <R> List<R> aggregate(GenericCondition<T> genericCondition, Aggregation<R> aggregation, GenericOrder... genericOrders){
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            List<R> results = getAggregation(createQuery(genericCondition, aggregation, genericOrders), aggregation);
+            QueryTimer.rows(results.size());
+            failed = false;
+            return results;
+        }finally{
+            stopTimer(queryTimer, "aggregate", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
+    }
+
+    @Override
+    public <R> List<R> aggregate(GenericCondition<T> genericCondition, Aggregation<R> aggregation, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException {
+
+        // if the pagination params are wrong
+        if(limit <= 0){
+            throw new WrongPaginationParamsException("The limit pagination param must be greater than zero");
+        }
+
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            List<R> results = getAggregation(createQuery(genericCondition, aggregation, genericOrders).setMaxResults(limit), aggregation);
+            QueryTimer.rows(results.size());
+            failed = false;
+            return results;
+        }finally{
+            stopTimer(queryTimer, "aggregate", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
     }
 
     @Override
     public Pagination<T> getSome(int offset, int limit, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
-        GenericCondition<T> genericCondition = initCondition(true);
-        return getSome(genericCondition, offset, limit);
+        return getSome(offset, limit, CountMode.SEQUENTIAL, genericOrders);
     }
 
     @Override
     public Pagination<T> getSome(GenericCondition<T> genericCondition, int offset, int limit, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        return getSome(genericCondition, offset, limit, CountMode.SEQUENTIAL, genericOrders);
+    }
 
-        // if it does not have count then it cant return a pagination
-        if(!genericCondition.doCount){
-            throw new NoCountPaginationException("No count operation was created to do the pagination");
+    @Override
+    public Pagination<T> getSome(int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        GenericCondition<T> genericCondition = initCondition(true);
+        return getSome(genericCondition, offset, limit, countMode, genericOrders);
+    }
+
+    @Override
+    public Pagination<T> getSome(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            Pagination<T> pagination = getSomeCoalesced(genericCondition, offset, limit, countMode, genericOrders);
+            QueryTimer.rows(pagination.getResults().size());
+            detachIfReadOnly(genericCondition, pagination.getResults());
+            failed = false;
+            return pagination;
+        }finally{
+            stopTimer(queryTimer, "getSome", failed, () -> genericCondition.describeRedacted(genericOrders));
         }
+    }
+
+    @Override
+    public <P> Pagination<P> getSome(GenericCondition<T> genericCondition, Projection<P> projection, int offset, int limit, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        return getSome(genericCondition, projection, offset, limit, CountMode.SEQUENTIAL, genericOrders);
+    }
+
+    @Override
+    public <P> Pagination<P> getSome(GenericCondition<T> genericCondition, Projection<P> projection, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            Pagination<P> pagination = paginate(genericCondition, offset, limit, countMode, () -> getProjection(
+                    createQuery(genericCondition, projection, genericOrders).setFirstResult(offset).setMaxResults(limit), projection));
+            QueryTimer.rows(pagination.getResults().size());
+            failed = false;
+            return pagination;
+        }finally{
+            stopTimer(queryTimer, "getSome", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
+    }
+
+    @Override
+    public KeysetPagination<T> getSomeAfter(String continuationToken, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException, WrongContinuationTokenException {
+        return getSomeAfter(initCondition(), continuationToken, limit, genericOrders);
+    }
+
+    @Override
+    public KeysetPagination<T> getSomeAfter(GenericCondition<T> genericCondition, String continuationToken, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException, WrongContinuationTokenException {
 
         // if the pagination params are wrong
-        if(offset < 0 || limit < 0){
-            throw new WrongPaginationParamsException("The offset or limit pagination params can't be less than zero");
+        if(limit <= 0){
+            throw new WrongPaginationParamsException("The limit pagination param must be greater than zero");
         }
 
-        List<T> results = entityManager.createQuery(genericCondition.generate(genericOrders)).setFirstResult(offset)
-                .setMaxResults(limit).getResultList();
-        Long count = entityManager.createQuery(genericCondition.generateCount()).getSingleResult();
-        return new Pagination<>(results, count);
+        // seeks the rows after the last row of the previous page, in a copy because seeking adds predicates
+        GenericOrder[] keysetOrders = toKeysetOrders(genericOrders);
+        GenericCondition<T> keysetCondition = genericCondition;
+        if(continuationToken != null){
+            keysetCondition = genericCondition.copy();
+            keysetCondition.seek(keysetOrders, ContinuationToken.decode(continuationToken, keysetOrders, getEntityType()));
+        }
+
+        // gets one more result to know if there is a next page
+        List<T> results = getPage(keysetCondition, 0, limit + 1, keysetOrders);
+        detachIfReadOnly(keysetCondition, results);
+        if(results.size() <= limit){
+            return new KeysetPagination<>(results, null);
+        }
+        results = new ArrayList<>(results.subList(0, limit));
+        return new KeysetPagination<>(results, ContinuationToken.encode(keysetOrders, results.getLast(), getEntityType()));
     }
 
     @Override
     public List<T> getNth(int nth, GenericOrder... genericOrders) {
-        return getNth(initCondition(), nth);
+        return getNth(initCondition(), nth, genericOrders);
     }
 
     @Override
     public List<T> getNth(GenericCondition<T> genericCondition, int nth, GenericOrder... genericOrders) {
-        return entityManager.createQuery(genericCondition.generate(genericOrders)).setFirstResult(0)
-                .setMaxResults(nth).getResultList();
+        QueryTimer queryTimer = startTimer();
+        boolean failed = true;
+        try{
+            List<T> results = getNthCached(genericCondition, nth, genericOrders);
+            QueryTimer.rows(results.size());
+            detachIfReadOnly(genericCondition, results);
+            failed = false;
+            return results;
+        }finally{
+            stopTimer(queryTimer, "getNth", failed, () -> genericCondition.describeRedacted(genericOrders));
+        }
     }
 
     @Override
@@ -122,20 +724,892 @@ public class GenericRepository<T extends GenericEntity, Object> implements IGene
         return getNth(genericCondition, 1, genericOrders).getFirst();
     }
 
+    /**
+     * Method that gets the lowest and the highest values of a field in the results of a generic condition
+     * @param genericCondition the generic condition
+     * @param field the entity field
+     * @return the lowest and the highest values, or nulls if there are no results
+     */
+    java.lang.Object[] getRange(GenericCondition<T> genericCondition, String field){
+        CriteriaQuery<java.lang.Object[]> criteriaQueryRange = template(RANGE_SHAPE_PREFIX + field + " " + genericCondition.shape(),
+                () -> genericCondition.generateRange(field));
+        return bind(entityManager.createQuery(criteriaQueryRange), genericCondition.getParameterValues()).getSingleResult();
+    }
+
+    /**
+     * Method that reads all the results of a generic condition in chunks, ordered by a key field with keyset
+     * pagination, clearing the persistence context after each chunk so that the memory is bounded by the chunk size
+     * @param genericCondition the generic condition, that is not changed
+     * @param keyField the key field
+     * @param chunkSize the number of results of each chunk
+     * @param chunkConsumer the consumer of each chunk
+     * @throws WrongPaginationParamsException if the chunk size is not greater than zero
+     * @throws WrongContinuationTokenException if the key field can't be compared
+     */
+    void scan(GenericCondition<T> genericCondition, String keyField, int chunkSize, Consumer<List<T>> chunkConsumer) throws WrongPaginationParamsException, WrongContinuationTokenException {
+        GenericOrder[] keyOrders = {GenericOrder.getOrder(keyField)};
+        String continuationToken = null;
+        do{
+            KeysetPagination<T> chunk = getSomeAfter(genericCondition, continuationToken, chunkSize, keyOrders);
+            chunkConsumer.accept(chunk.getResults());
+            entityManager.clear();
+            continuationToken = chunk.getContinuationToken();
+        }while(continuationToken != null);
+    }
+
+    /**
+     * Method that gets a page of results of a generic condition with its count, following the identical read in
+     * flight if there is a read coalescer
+     * @param genericCondition the condition to filter the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the generic orders
+     * @return the page of results
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    private Pagination<T> getSomeCoalesced(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        if(readCoalescer == null){
+            return getSomeCached(genericCondition, offset, limit, countMode, genericOrders);
+        }
+
+        // the exceptions of the pagination params are thrown by each read, so they are carried through the coalescer
+        ResultCache.Key key = new ResultCache.Key("getSome", genericCondition.describe(), GenericOrder.signature(genericOrders),
+                offset, limit, countMode);
+        try{
+            return readCoalescer.read(key, getWriteVersion(), () -> {
+                try{
+                    return getSomeCached(genericCondition, offset, limit, countMode, genericOrders);
+                }catch(NoCountPaginationException | WrongPaginationParamsException e){
+                    throw new CompletionException(e);
+                }
+            }, pagination -> new SharedPage(share(new ArrayList<>(pagination.getResults())),
+                    pagination.isCountResolved() ? pagination.getCount() : null, pagination.isEstimated()), sharedPage -> {
+                List<T> results = restore(sharedPage.results());
+                return sharedPage.count() != null ? new Pagination<>(results, sharedPage.count(), sharedPage.estimated()) :
+                        new Pagination<>(results, () -> total(genericCondition));
+            });
+        }catch(CompletionException e){
+            if(e.getCause() instanceof NoCountPaginationException noCountPaginationException){
+                throw noCountPaginationException;
+            }
+            if(e.getCause() instanceof WrongPaginationParamsException wrongPaginationParamsException){
+                throw wrongPaginationParamsException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method that serializes the results of a read to share them with the identical reads
+     * @param results the entity or the list of entities
+     * @return the snapshot of the results, or null if there are no results
+     */
+    private byte[] share(java.io.Serializable results){
+        return results != null ? QueryTimer.measure(QueryPhase.HYDRATE, () -> Snapshots.serialize(results)) : null;
+    }
+
+    /**
+     * Method that restores the results of a shared read into detached copies
+     * @param snapshot the snapshot of the results
+     * @return the entity or the list of entities
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R restore(byte[] snapshot){
+        return snapshot != null ? QueryTimer.measure(QueryPhase.HYDRATE,
+                () -> (R) Snapshots.deserialize(snapshot, genericEntityClass.getClassLoader())) : null;
+    }
+
+    /**
+     * Method that gets a page of results of a generic condition with its count, from the result cache if there is one
+     * @param genericCondition the condition to filter the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the generic orders
+     * @return the page of results
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    private Pagination<T> getSomeCached(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException {
+        if(resultCache == null){
+            return paginate(genericCondition, offset, limit, countMode, () -> getPage(genericCondition, offset, limit, genericOrders));
+        }
+
+        ResultCache.Key key = new ResultCache.Key("getSome", genericCondition.describe(), GenericOrder.signature(genericOrders),
+                offset, limit, countMode);
+        long writeVersion = getWriteVersion();
+        ResultCache.Entry cachedEntry = resultCache.get(key, writeVersion);
+        List<T> cachedResults = getCachedResults(cachedEntry, genericCondition);
+        if(cachedResults != null){
+            return cachedEntry.count() != null ? new Pagination<>(cachedResults, cachedEntry.count(), cachedEntry.estimated()) :
+                    new Pagination<>(cachedResults, () -> total(genericCondition));
+        }
+
+        Pagination<T> pagination = paginate(genericCondition, offset, limit, countMode,
+                () -> getPage(genericCondition, offset, limit, genericOrders));
+        resultCache.put(key, getIds(pagination.getResults()), pagination.isCountResolved() ? pagination.getCount() : null,
+                pagination.isEstimated(), writeVersion);
+        return pagination;
+    }
+
+    /**
+     * Method that gets the first results of a generic condition, from the result cache if there is one
+     * @param genericCondition the condition to filter the results
+     * @param nth the number of results to return
+     * @param genericOrders the generic orders
+     * @return the first results
+     */
+    private List<T> getNthCached(GenericCondition<T> genericCondition, int nth, GenericOrder... genericOrders) {
+        if(resultCache == null){
+            return getPage(genericCondition, 0, nth, genericOrders);
+        }
+
+        ResultCache.Key key = new ResultCache.Key("getNth", genericCondition.describe(), GenericOrder.signature(genericOrders),
+                0, nth, null);
+        long writeVersion = getWriteVersion();
+        List<T> cachedResults = getCachedResults(resultCache.get(key, writeVersion), genericCondition);
+        if(cachedResults != null){
+            return cachedResults;
+        }
+
+        List<T> results = getPage(genericCondition, 0, nth, genericOrders);
+        resultCache.put(key, getIds(results), null, false, writeVersion);
+        return results;
+    }
+
+    /**
+     * Method that gets a page of results of a generic condition with its count, getting the count in a specific mode
+     * @param genericCondition the condition to filter the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param pageQuery the query of the page of results
+     * @return the page of results
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    private <R> Pagination<R> paginate(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, Supplier<List<R>> pageQuery) throws NoCountPaginationException, WrongPaginationParamsException {
+
+        // if it does not have count then it cant return a pagination
+        if(!genericCondition.doCount){
+            throw new NoCountPaginationException("No count operation was created to do the pagination");
+        }
+
+        // if the pagination params are wrong
+        if(offset < 0 || limit < 0){
+            throw new WrongPaginationParamsException("The offset or limit pagination params can't be less than zero");
+        }
+
+        String countShape = COUNT_SHAPE_PREFIX + genericCondition.shape();
+        List<?> parameterValues = genericCondition.getParameterValues();
+        long writeVersion = getWriteVersion();
+
+        // the cached and estimated counts don't need the count query
+        Long knownCount = getCachedCount(countShape, parameterValues, writeVersion);
+        boolean estimated = false;
+        if(knownCount == null && countMode == CountMode.ESTIMATED && countEstimator != null && !genericCondition.hasPredicates()){
+            knownCount = estimate();
+            estimated = knownCount != null;
+        }
+
+        // the concurrent count starts before the page query, in a separate persistence context, and it is stopped
+        // at the end of the call even if the page query fails
+        ConcurrentCount concurrentCount = knownCount == null && countMode == CountMode.CONCURRENT ? startCount(genericCondition, writeVersion) : null;
+        try{
+            List<R> results = pageQuery.get();
+
+            // if it's the last page the count is already known
+            if(limit > 0 && results.size() < limit && (!results.isEmpty() || offset == 0)){
+                long derivedCount = (long) offset + results.size();
+                cacheCount(countShape, parameterValues, derivedCount, writeVersion);
+                return new Pagination<>(results, derivedCount);
+            }
+
+            if(knownCount != null){
+                return new Pagination<>(results, knownCount, estimated);
+            }
+            return switch(countMode){
+                case SEQUENTIAL, ESTIMATED -> new Pagination<>(results, count(genericCondition, entityManager, writeVersion));
+                // without a free permit the count runs after the page query
+                case CONCURRENT -> new Pagination<>(results, concurrentCount != null ?
+                        QueryTimer.measure(QueryPhase.EXECUTE, concurrentCount::await) : count(genericCondition, entityManager, writeVersion));
+                case LAZY -> new Pagination<>(results, () -> count(genericCondition, entityManager, getWriteVersion()));
+            };
+        }finally{
+            if(concurrentCount != null){
+                stopCount(concurrentCount);
+            }
+        }
+    }
+
+    /**
+     * Method that finds an entity by its ID, from the entity cache if there is one
+     * The entity cache is skipped while the transaction of the entity manager has writes, because they are not
+     * committed yet
+     * @param id the ID of the entity
+     * @return the entity, or null if it does not exist
+     */
+    private T findById(Object id){
+        if(entityCache == null || WriteVersions.isWriting(entityManager)){
+            return QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.find(genericEntityClass, id));
+        }
+
+        // the entity is always a detached copy, on the hits and on the misses, so the callers never get a managed
+        // entity from one call and a detached one from the next
+        T cachedEntity = QueryTimer.measure(QueryPhase.HYDRATE, () -> entityCache.get(id, genericEntityClass));
+        if(cachedEntity != null){
+            return cachedEntity;
+        }
+        long writeVersion = WriteVersions.of(genericEntityClass);
+        long cacheVersion = entityCache.getVersion();
+        T entity = QueryTimer.measure(QueryPhase.EXECUTE, () -> entityManager.find(genericEntityClass, id));
+        if(entity == null){
+            return null;
+        }
+        QueryTimer.measure(QueryPhase.HYDRATE, () -> cacheEntity(id, entity, writeVersion, cacheVersion));
+        return restore(share(entity));
+    }
+
+    /**
+     * Method that caches an entity read from the database, unless the entity was written during the read or it has
+     * writes in open transactions, so that the cache only keeps committed state
+     * @param id the ID of the entity
+     * @param entity the entity
+     * @param writeVersion the version of the writes of the entity before the read
+     * @param cacheVersion the version of the cache before the read
+     */
+    private void cacheEntity(Object id, T entity, long writeVersion, long cacheVersion){
+        if(writeVersion != WriteVersions.PENDING && writeVersion == WriteVersions.of(genericEntityClass)){
+            entityCache.put(id, entity, cacheVersion);
+        }
+    }
+
+    /**
+     * Method that runs the query of a projection and maps its rows into the results of the projection
+     * @param query the query of the projection
+     * @param projection the projection
+     * @return the results of the projection
+     */
+    private <P> List<P> getProjection(TypedQuery<?> query, Projection<P> projection){
+        List<?> rows = QueryTimer.measure(QueryPhase.EXECUTE, query::getResultList);
+        return QueryTimer.measure(QueryPhase.HYDRATE, () -> projection.toResults(rows));
+    }
+
+    /**
+     * Method that executes the query of an aggregation
+     * @param query the query
+     * @param aggregation the aggregation
+     * @return the rows of the aggregation
+     */
+    private <R> List<R> getAggregation(TypedQuery<?> query, Aggregation<R> aggregation){
+        List<?> rows = QueryTimer.measure(QueryPhase.EXECUTE, query::getResultList);
+        return QueryTimer.measure(QueryPhase.HYDRATE, () -> aggregation.toResults(rows));
+    }
+
+    /**
+     * Method that estimates the total number of results of the entity
+     * @return the estimated number of results, or null if there is no estimator or no estimate
+     */
+    private Long estimate(){
+        return countEstimator != null ? QueryTimer.measure(QueryPhase.EXECUTE, () -> countEstimator.estimate(entityManager)) : null;
+    }
+
+    /**
+     * Method that starts the timer of a call, if there is a metrics sink
+     * @return the timer, or null if there is no metrics sink or the call is nested in another measured call
+     */
+    private QueryTimer startTimer(){
+        return metrics != null ? QueryTimer.start() : null;
+    }
+
+    /**
+     * Method that stops the timer of a call and records its metrics
+     * @param queryTimer the timer of the call, or null if the call is not measured
+     * @param operation the operation of the call
+     * @param failed true if the call failed, false if not
+     * @param conditionDescriber the generator of the redacted description of the condition, or null if there is no
+     *                           condition
+     */
+    private void stopTimer(QueryTimer queryTimer, String operation, boolean failed, Supplier<String> conditionDescriber){
+        if(queryTimer != null){
+            metrics.record(queryTimer.stop(genericEntityClass, operation, failed,
+                    conditionDescriber != null ? conditionDescriber : () -> "no condition"));
+        }
+    }
+
+    /**
+     * Method that removes a saved or removed entity from the entity cache, and invalidates the cached counts
+     * @param entity the entity
+     */
+    private void invalidate(T entity){
+        WriteVersions.record(genericEntityClass, entityManager);
+        if(entityCache != null){
+            java.lang.Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+            if(id != null){
+                entityCache.invalidate(id);
+            }
+        }
+    }
+
+    /**
+     * Method that removes all the entities from the entity cache and invalidates the cached counts, after a bulk
+     * statement
+     */
+    private void invalidateAll(){
+        WriteVersions.record(genericEntityClass, entityManager);
+        if(entityCache != null){
+            entityCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Method that generates the orders of a keyset pagination, adding the ID of the entity as the last order if it is
+     * not already ordered by it, so that the order is unique and stable between pages
+     * The ID takes the direction of the last order, or ascending if there are no orders, and the null values are the
+     * highest values of each order, so that the seek predicates know where they are in every database
+     * @param genericOrders the generic orders
+     * @return the keyset orders
+     */
+    private GenericOrder[] toKeysetOrders(GenericOrder... genericOrders){
+        EntityType<T> entityType = getEntityType();
+        String idField = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        GenericOrder[] keysetOrders = Arrays.stream(genericOrders).map(GenericOrder::withNullsHighest).toArray(GenericOrder[]::new);
+        if(Arrays.stream(genericOrders).anyMatch(genericOrder -> genericOrder.getField().equals(idField))){
+            return keysetOrders;
+        }
+        boolean ascending = genericOrders.length == 0 || genericOrders[genericOrders.length - 1].isAscending();
+        keysetOrders = Arrays.copyOf(keysetOrders, genericOrders.length + 1);
+        keysetOrders[genericOrders.length] = GenericOrder.getOrder(ascending ? idField : "-" + idField).withNullsHighest();
+        return keysetOrders;
+    }
+
+    /**
+     * Method that saves entities in batches, flushing and clearing the persistence context after each batch
+     * @param entities the entities to save
+     * @param save the operation that saves each entity
+     * @param batchReport the report where the batches are registered
+     */
+    private void saveInBatches(Iterable<T> entities, Consumer<T> save, BatchReport batchReport){
+        int batchEntities = 0;
+        long batchStart = System.nanoTime();
+        for(T entity : entities){
+            save.accept(entity);
+            invalidate(entity);
+            batchEntities++;
+            if(batchEntities == batchReport.getBatchSize()){
+                flushBatch(batchEntities, batchStart, batchReport);
+                batchEntities = 0;
+                batchStart = System.nanoTime();
+            }
+        }
+        if(batchEntities > 0){
+            flushBatch(batchEntities, batchStart, batchReport);
+        }
+    }
+
+    /**
+     * Method that upserts a batch of entities and clears the persistence context
+     * @param upsertStatement the upsert statement of the entity
+     * @param batch the entities of the batch
+     * @param batchStart the start of the batch, in nanoseconds
+     * @param batchReport the report where the batch is registered
+     */
+    private void upsertBatch(UpsertStatement upsertStatement, List<T> batch, long batchStart, BatchReport batchReport){
+        executeUpsert(upsertStatement, batch);
+        batch.forEach(this::invalidate);
+        flushBatch(batch.size(), batchStart, batchReport);
+    }
+
+    /**
+     * Method that executes the upsert statements of some entities, with as many entities in each statement as the
+     * parameter limit of the database allows
+     * @param upsertStatement the upsert statement of the entity
+     * @param entities the entities, with IDs
+     */
+    private void executeUpsert(UpsertStatement upsertStatement, List<T> entities){
+
+        // the databases don't allow two rows with the same ID in one statement, so only the last one is written
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Map<java.lang.Object, T> entitiesById = new LinkedHashMap<>();
+        entities.forEach(entity -> entitiesById.put(persistenceUnitUtil.getIdentifier(entity), entity));
+        List<T> rows = new ArrayList<>(entitiesById.values());
+
+        int maxRows = upsertStatement.maxRows();
+        for(int start = 0; start < rows.size(); start += maxRows){
+            List<T> chunk = rows.subList(start, Math.min(start + maxRows, rows.size()));
+            List<java.lang.Object> values = new ArrayList<>();
+            chunk.forEach(entity -> upsertStatement.appendValues(entity, persistenceUnitUtil, values));
+            Query query = entityManager.createNativeQuery(upsertStatement.sql(chunk.size()));
+            for(int i = 0; i < values.size(); i++){
+                query.setParameter(i + 1, values.get(i));
+            }
+            query.executeUpdate();
+        }
+    }
+
+    /**
+     * Method that gets the upsert statement of the entity
+     * @return the upsert statement, or null if the database has no upsert dialect or the mapping of the entity is not
+     * supported
+     */
+    private UpsertStatement getUpsertStatement(){
+        return UpsertStatement.of(entityManager.getEntityManagerFactory(), getEntityType());
+    }
+
+    /**
+     * Method that flushes a batch to the database and clears the persistence context
+     * @param batchEntities the number of entities of the batch
+     * @param batchStart the start of the batch, in nanoseconds
+     * @param batchReport the report where the batch is registered
+     */
+    private void flushBatch(int batchEntities, long batchStart, BatchReport batchReport){
+        entityManager.flush();
+        entityManager.clear();
+        batchReport.addBatch(batchEntities, Duration.ofNanos(System.nanoTime() - batchStart));
+    }
+
+    /**
+     * Method that initializes the report of a batch save
+     * @param batchSize the number of entities of each batch
+     * @return the report of the batches
+     * @throws IllegalArgumentException if the batch size is not greater than zero
+     */
+    private BatchReport initBatchReport(int batchSize){
+        if(batchSize <= 0){
+            throw new IllegalArgumentException("The batch size must be greater than zero");
+        }
+        return new BatchReport(batchSize);
+    }
+
+    /**
+     * Method that gets the JDBC fetch size hint of the provider of the entity manager, since the providers log the
+     * hints they don't know
+     * @return the fetch size hint, or null if the provider is unknown
+     */
+    private String getFetchSizeHint(){
+        String delegateClass;
+        try{
+            delegateClass = entityManager.getDelegate().getClass().getName();
+        }catch(IllegalStateException e){
+            return null;
+        }
+        if(delegateClass.startsWith(HIBERNATE_PACKAGE)){
+            return HIBERNATE_FETCH_SIZE_HINT;
+        }
+        return delegateClass.startsWith(ECLIPSELINK_PACKAGE) ? ECLIPSELINK_FETCH_SIZE_HINT : null;
+    }
+
+    /**
+     * Method that gets the JDBC batch size configured in the provider, or a default one if it is not configured
+     * @return the batch size
+     */
+    private int getProviderBatchSize(){
+        Map<String, java.lang.Object> properties = entityManager.getEntityManagerFactory().getProperties();
+        for(String property : BATCH_SIZE_PROPERTIES){
+            java.lang.Object batchSize = properties.get(property);
+            if(batchSize != null && batchSize.toString().trim().matches("[1-9]\\d*")){
+                return Integer.parseInt(batchSize.toString().trim());
+            }
+        }
+        return DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Method that creates the query of a generic condition, reusing the criteria query of the conditions with the
+     * same shape and only binding the values of the condition
+     * @param genericCondition the generic condition
+     * @param genericOrders the generic orders
+     * @return the query
+     */
+    private TypedQuery<T> createQuery(GenericCondition<T> genericCondition, GenericOrder... genericOrders){
+        return createQuery(genericCondition, true, genericOrders);
+    }
+
+    /**
+     * Method that creates the query of a generic condition, with or without its fetch plan
+     * The associations to fetch are applied as a load graph, so the criteria query of the condition is the same
+     * @param genericCondition the generic condition
+     * @param fetch true to fetch the associations of the condition, false if not
+     * @param genericOrders the generic orders
+     * @return the query
+     */
+    private TypedQuery<T> createQuery(GenericCondition<T> genericCondition, boolean fetch, GenericOrder... genericOrders){
+        QueryTimer.inListStrategy(genericCondition.getInListStrategy(false));
+        CriteriaQuery<T> criteriaQuery = template(genericCondition.shape(genericOrders), () -> genericCondition.generate(genericOrders));
+        TypedQuery<T> query = bind(entityManager.createQuery(criteriaQuery), genericCondition.getParameterValues());
+        List<String> fetches = genericCondition.getFetches();
+        if(fetch && !fetches.isEmpty()){
+            query.setHint(LOAD_GRAPH_HINT, createFetchGraph(fetches));
+        }
+        if(genericCondition.isReadOnly()){
+            setReadOnlyHints(query);
+        }
+        return query;
+    }
+
+    /**
+     * Method that sets the hints of a read only query, so that the results are not managed with snapshots and they
+     * don't replace the entities of the second level cache
+     * @param query the query
+     */
+    private void setReadOnlyHints(Query query){
+        for(String readOnlyHint : READ_ONLY_HINTS){
+            query.setHint(readOnlyHint, true);
+        }
+        query.setHint(CACHE_RETRIEVE_MODE_HINT, CacheRetrieveMode.USE);
+        query.setHint(CACHE_STORE_MODE_HINT, CacheStoreMode.BYPASS);
+    }
+
+    /**
+     * Method that detaches the results of a read only generic condition from the persistence context, so that they
+     * are not kept in memory by it
+     * @param genericCondition the generic condition
+     * @param results the results
+     */
+    private void detachIfReadOnly(GenericCondition<T> genericCondition, List<T> results){
+        if(genericCondition.isReadOnly()){
+            QueryTimer.measure(QueryPhase.HYDRATE, () -> results.forEach(entityManager::detach));
+        }
+    }
+
+    /**
+     * Method that gets a page of results of a generic condition
+     * The collections fetched with a pagination would be paginated in memory by the provider, so in that case the
+     * page is read first and then the associations are fetched for the IDs of the page
+     * The page is read with one query, binding the large in lists whole, since the chunks of an in list can't be
+     * ordered and paginated by the database
+     * @param genericCondition the generic condition
+     * @param offset the offset of the page
+     * @param limit the maximum number of results of the page
+     * @param genericOrders the generic orders
+     * @return the page of results
+     */
+    private List<T> getPage(GenericCondition<T> genericCondition, int offset, int limit, GenericOrder... genericOrders){
+        if(!genericCondition.hasCollectionFetch()){
+            return QueryTimer.measure(QueryPhase.EXECUTE,
+                    createQuery(genericCondition, genericOrders).setFirstResult(offset).setMaxResults(limit)::getResultList);
+        }
+        List<T> results = QueryTimer.measure(QueryPhase.EXECUTE,
+                createQuery(genericCondition, false, genericOrders).setFirstResult(offset).setMaxResults(limit)::getResultList);
+        fetchByIds(results, genericCondition.getFetches());
+        return results;
+    }
+
+    /**
+     * Method that splits a generic condition on its largest IN list, recording the IN list strategy of the query
+     * @param genericCondition the generic condition
+     * @return the conditions of the chunks, or the generic condition itself if it has no IN list to split
+     */
+    private List<GenericCondition<T>> splitInList(GenericCondition<T> genericCondition){
+        QueryTimer.inListStrategy(genericCondition.getInListStrategy(true));
+        return genericCondition.splitInList();
+    }
+
+    /**
+     * Method that fetches associations of entities already read, by their IDs
+     * The fetched associations are loaded into the same managed entities
+     * @param entities the entities
+     * @param fetches the associations to fetch
+     */
+    private void fetchByIds(List<T> entities, List<String> fetches){
+        EntityType<T> entityType = getEntityType();
+        String idField = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        List<java.lang.Object> ids = getIds(entities).stream().distinct().toList();
+        String[] fetchFields = fetches.toArray(String[]::new);
+        for(int start = 0; start < ids.size(); start += DEFAULT_ID_CHUNK_SIZE){
+            QueryTimer.measure(QueryPhase.EXECUTE, createQuery(initCondition().in(idField,
+                    ids.subList(start, Math.min(start + DEFAULT_ID_CHUNK_SIZE, ids.size()))).fetch(fetchFields))::getResultList);
+        }
+    }
+
+    /**
+     * Method that restores the cached results of a generic condition by their IDs
+     * @param cachedEntry the cached results
+     * @param genericCondition the generic condition, with the associations to fetch
+     * @return the results, or null if they are not cached or some of them no longer exists
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> getCachedResults(ResultCache.Entry cachedEntry, GenericCondition<T> genericCondition){
+        if(cachedEntry == null){
+            return null;
+        }
+        List<T> results = getByIds((List<Object>) (List<?>) cachedEntry.ids());
+        if(results.size() != cachedEntry.ids().size()){
+            return null;
+        }
+        List<String> fetches = genericCondition.getFetches();
+        if(!fetches.isEmpty()){
+            fetchByIds(results, fetches);
+        }
+        return results;
+    }
+
+    /**
+     * Method that gets the IDs of some entities
+     * @param entities the entities
+     * @return the IDs, in the same order
+     */
+    private List<java.lang.Object> getIds(List<T> entities){
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        return entities.stream().map(persistenceUnitUtil::getIdentifier).toList();
+    }
+
+    /**
+     * Method that creates the entity graph of the associations to fetch
+     * @param fetches the associations to fetch, the nested associations separated by dots
+     * @return the entity graph
+     */
+    private EntityGraph<T> createFetchGraph(List<String> fetches){
+        EntityGraph<T> entityGraph = entityManager.createEntityGraph(genericEntityClass);
+        Map<String, Graph<?>> subgraphs = new HashMap<>();
+        for(String fetch : fetches){
+            Graph<?> graph = entityGraph;
+            String prefix = "";
+            String[] associations = fetch.split("\\.");
+            for(int i = 0; i < associations.length - 1; i++){
+                prefix += "." + associations[i];
+                Graph<?> parent = graph;
+                String association = associations[i];
+                graph = subgraphs.computeIfAbsent(prefix, key -> parent.addSubgraph(association));
+            }
+            graph.addAttributeNodes(associations[associations.length - 1]);
+        }
+        return entityGraph;
+    }
+
+    /**
+     * Method that creates the query of a projection of a generic condition, reusing the criteria query of the
+     * conditions with the same shape and projection
+     * @param genericCondition the generic condition
+     * @param projection the projection
+     * @param genericOrders the generic orders
+     * @return the query
+     */
+    private TypedQuery<?> createQuery(GenericCondition<T> genericCondition, Projection<?> projection, GenericOrder... genericOrders){
+        QueryTimer.inListStrategy(genericCondition.getInListStrategy(false));
+        CriteriaQuery<?> criteriaQuery = template(projection.shape() + " " + genericCondition.shape(genericOrders),
+                () -> genericCondition.generate(projection, genericOrders));
+        return bind(entityManager.createQuery(criteriaQuery), genericCondition.getParameterValues());
+    }
+
+    /**
+     * Method that creates the query of an aggregation of a generic condition, reusing the criteria query of the
+     * conditions with the same shape and aggregation
+     * @param genericCondition the generic condition
+     * @param aggregation the aggregation
+     * @param genericOrders the generic orders
+     * @return the query
+     */
+    private TypedQuery<?> createQuery(GenericCondition<T> genericCondition, Aggregation<?> aggregation, GenericOrder... genericOrders){
+        QueryTimer.inListStrategy(genericCondition.getInListStrategy(false));
+        CriteriaQuery<?> criteriaQuery = template(AGGREGATION_SHAPE_PREFIX + aggregation.shape() + " " + genericCondition.shape(genericOrders),
+                () -> genericCondition.generate(aggregation, genericOrders));
+        return bind(entityManager.createQuery(criteriaQuery), genericCondition.getParameterValues(aggregation));
+    }
+
+    /**
+     * Method that gets the criteria query shared by the conditions with the same shape, generating it on the first
+     * use
+     * Reusing the same criteria query keeps the query plans of the provider and the statements of the database
+     * cached, since only the values of the parameters change
+     * @param shape the shape of the condition
+     * @param generator the generator of the criteria query
+     * @return the criteria query, without the values bound
+     */
+    @SuppressWarnings("unchecked")
+    private <R> CriteriaQuery<R> template(String shape, Supplier<CriteriaQuery<R>> generator){
+        CriteriaQuery<R> criteriaQuery = (CriteriaQuery<R>) queryTemplates.get(shape);
+        if(criteriaQuery == null){
+            criteriaQuery = generator.get();
+            // the cache is bounded, the shapes above the limit are generated in each call
+            if(queryTemplates.size() < MAX_QUERY_TEMPLATES){
+                queryTemplates.putIfAbsent(shape, criteriaQuery);
+            }
+        }
+        return criteriaQuery;
+    }
+
+    /**
+     * Method that binds the values of a condition to the parameters of a query
+     * @param query the query
+     * @param parameterValues the values, in the order of the parameters
+     * @return the query
+     */
+    private static <Q extends Query> Q bind(Q query, List<?> parameterValues){
+        for(int i = 0; i < parameterValues.size(); i++){
+            query.setParameter(GenericCondition.parameterName(i), parameterValues.get(i));
+        }
+        return query;
+    }
+
+    /**
+     * Method that counts the results of a generic condition, summing the counts of its chunks if it has a large IN list,
+     * and caches the count under the shape of the whole condition, if there is a count cache
+     * @param genericCondition the generic condition
+     * @param countEntityManager the entity manager of the count, the current one or the one of a concurrent count
+     * @param writeVersion the version of the writes of the entity before counting
+     * @return the count
+     */
+    private Long count(GenericCondition<T> genericCondition, EntityManager countEntityManager, long writeVersion){
+        long count = 0;
+        for(GenericCondition<T> chunk : splitInList(genericCondition)){
+            String countShape = COUNT_SHAPE_PREFIX + chunk.shape();
+            CriteriaQuery<Long> criteriaQueryCount = template(countShape, chunk::generateCount);
+            count += QueryTimer.measure(QueryPhase.EXECUTE,
+                    bind(countEntityManager.createQuery(criteriaQueryCount), chunk.getParameterValues())::getSingleResult);
+        }
+        cacheCount(COUNT_SHAPE_PREFIX + genericCondition.shape(), genericCondition.getParameterValues(), count, writeVersion);
+        return count;
+    }
+
+    /**
+     * Method that gets a cached count
+     * @param countShape the shape of the count query
+     * @param parameterValues the values of the parameters
+     * @param writeVersion the current version of the writes of the entity
+     * @return the count, or null if there is no count cache or the count is not cached
+     */
+    private Long getCachedCount(String countShape, List<?> parameterValues, long writeVersion){
+        return countCache != null ? countCache.get(genericEntityClass, countShape, parameterValues, writeVersion) : null;
+    }
+
+    /**
+     * Method that gets the version of the writes of the entity to read the shared caches with
+     * The version is not looked up if the repository has no count cache, result cache or read coalescer, since the
+     * lookup checks every open write transaction
+     * @return the version of the writes, or PENDING if the shared caches can't be used, because there are none, the
+     * entity has writes in open transactions or the transaction of the entity manager has writes
+     */
+    private long getWriteVersion(){
+        if(countCache == null && resultCache == null && readCoalescer == null){
+            return WriteVersions.PENDING;
+        }
+        return WriteVersions.isWriting(entityManager) ? WriteVersions.PENDING : WriteVersions.of(genericEntityClass);
+    }
+
+    /**
+     * Method that caches a count, if there is a count cache
+     * @param countShape the shape of the count query
+     * @param parameterValues the values of the parameters
+     * @param count the count
+     * @param writeVersion the version of the writes of the entity before counting
+     */
+    private void cacheCount(String countShape, List<?> parameterValues, Long count, long writeVersion){
+        if(countCache != null){
+            countCache.put(genericEntityClass, countShape, parameterValues, count, writeVersion);
+        }
+    }
+
+    /**
+     * Method that starts a count at the same time as the page query, in a new persistence context, if there is a free
+     * permit for its connection
+     * @param genericCondition the generic condition
+     * @param writeVersion the version of the writes of the entity before counting
+     * @return the concurrent count, or null if there is no free permit
+     */
+    private ConcurrentCount startCount(GenericCondition<T> genericCondition, long writeVersion){
+        if(countPermits != null && !countPermits.tryAcquire()){
+            return null;
+        }
+        try{
+            EntityManager countEntityManager = entityManager.getEntityManagerFactory().createEntityManager();
+            return new ConcurrentCount(countEntityManager, CompletableFuture.supplyAsync(() -> {
+                try(countEntityManager){
+                    return count(genericCondition, countEntityManager, writeVersion);
+                }
+            }, COUNT_EXECUTOR));
+        }catch(RuntimeException e){
+            if(countPermits != null){
+                countPermits.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method that stops a concurrent count at the end of the pagination, cancelling its query if it is still running
+     * and waiting for it to end, so that its connection is not held after the call
+     * @param concurrentCount the concurrent count
+     */
+    private void stopCount(ConcurrentCount concurrentCount){
+        try{
+            if(!concurrentCount.count().isDone()){
+                cancelRunningQuery(concurrentCount.entityManager());
+            }
+            concurrentCount.count().exceptionally(e -> null).join();
+        }finally{
+            if(countPermits != null){
+                countPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Method that cancels the query running in an entity manager, if the provider supports it
+     * The JPA has no cancellation, so only the Hibernate sessions are cancelled, by reflection to not depend on
+     * the provider
+     * @param entityManager the entity manager
+     */
+    static void cancelRunningQuery(EntityManager entityManager){
+        try{
+            Class<?> sessionClass = Class.forName(HIBERNATE_SESSION_CLASS, false, entityManager.getClass().getClassLoader());
+            java.lang.Object session = entityManager.unwrap(sessionClass);
+            sessionClass.getMethod(HIBERNATE_CANCEL_QUERY_METHOD).invoke(session);
+        }catch(ReflectiveOperationException | RuntimeException e){
+            // the provider is not Hibernate or there is no running query
+        }
+    }
+
     /**
      * Method that initializes a generic condition related to a specific entity
      * @param doCount a flag that indicates if the count condition is to initialize in parallel
      * @return the generic condition
      */
     private GenericCondition<T> initCondition(boolean doCount){
-        // creates the builder
+        // the criteria queries are only created when the condition is executed
         CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
-        CriteriaQuery<T> criteriaQuery = criteriaBuilder.createQuery(genericEntityClass);
-        CriteriaQuery<Long> criteriaBuilderQueryCount = doCount ? criteriaBuilder.createQuery(Long.class) : null;
+        return new GenericCondition<>(getEntityType(), criteriaBuilder, doCount);
+    }
 
-        // select + from
-        Root<T> root = criteriaQuery.from(genericEntityClass);
-        Root<T> rootCount = doCount ? criteriaBuilderQueryCount.from(genericEntityClass) : null;
-        return new GenericCondition<>(root, rootCount, criteriaBuilder, criteriaQuery, criteriaBuilderQueryCount, doCount);
+    /**
+     * Method that gets the metamodel of the entity
+     * @return the metamodel of the entity
+     */
+    private EntityType<T> getEntityType(){
+        return entityManager.getMetamodel().entity(genericEntityClass);
+    }
+
+    /**
+     * Page of results shared by a read with the identical reads
+     * @param results the snapshot of the results
+     * @param count the count, or null if it was not resolved
+     * @param estimated true if the count is estimated, false if not
+     */
+    private record SharedPage(byte[] results, Long count, boolean estimated) {
+    }
+
+    /**
+     * Count running at the same time as the page query
+     * @param entityManager the entity manager of the count
+     * @param count the future of the count
+     */
+    private record ConcurrentCount(EntityManager entityManager, CompletableFuture<Long> count) {
+
+        /**
+         * Method that waits for the count, throwing the original exception if the count failed
+         * @return the number of results
+         */
+        private Long await(){
+            try{
+                return count.join();
+            }catch(CompletionException e){
+                if(e.getCause() instanceof RuntimeException runtimeException){
+                    throw runtimeException;
+                }
+                throw e;
+            }
+        }
     }
 }
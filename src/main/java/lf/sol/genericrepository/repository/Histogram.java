@@ -0,0 +1,121 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of non-negative values, such as latencies in nanoseconds or numbers of rows
+ * Each power of two is split into 8 buckets, so the percentiles have a relative error of at most 12.5%, with a
+ * fixed memory of a few kilobytes
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+
+    Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+    }
+
+    /**
+     * Method that records a value
+     * @param value the value, the negative values are recorded as zero
+     */
+    void record(long value){
+        long recordedValue = Math.max(value, 0);
+        buckets.incrementAndGet(bucketOf(recordedValue));
+        count.increment();
+        sum.add(recordedValue);
+    }
+
+    /**
+     * Method that gets the number of recorded values
+     * @return the number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Method that gets the sum of the recorded values
+     * @return the sum of the values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Method that gets the mean of the recorded values
+     * @return the mean, or zero if there are no values
+     */
+    public double getMean() {
+        long recordedCount = getCount();
+        return recordedCount == 0 ? 0 : (double) getSum() / recordedCount;
+    }
+
+    /**
+     * Method that gets a percentile of the recorded values, as the upper bound of its bucket
+     * @param percentile the percentile, between 0 and 100
+     * @return the value of the percentile, or zero if there are no values
+     */
+    public long getPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100){
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= rank){
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    /**
+     * Method that gets the bucket of a value
+     * The values below the number of sub buckets have their own bucket, the others are split by their highest bit
+     * and the next bits
+     * @param value the value
+     * @return the index of the bucket
+     */
+    private static int bucketOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Method that gets the highest value of a bucket
+     * @param bucket the index of the bucket
+     * @return the highest value
+     */
+    private static long upperBoundOf(int bucket){
+        if(bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1 < 0 ? Long.MAX_VALUE : lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,125 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics sink that keeps in memory the histograms of the latencies (in nanoseconds) and of the rows of the calls,
+ * and the counts of the strategies of their in lists, by entity and operation, for the applications without a
+ * metrics library
+ */
+public final class HistogramMetrics implements RepositoryMetrics {
+
+    private final Map<Key, Histograms> histograms;
+
+    public HistogramMetrics() {
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void record(QueryMetrics queryMetrics) {
+        Histograms operationHistograms = histograms.computeIfAbsent(
+                new Key(queryMetrics.getEntityClass(), queryMetrics.getOperation()), key -> new Histograms());
+        for(QueryPhase queryPhase : QueryPhase.values()){
+            operationHistograms.phases[queryPhase.ordinal()].record(queryMetrics.getNanos(queryPhase));
+        }
+        operationHistograms.total.record(queryMetrics.getTotalNanos());
+        operationHistograms.rows.record(queryMetrics.getRows());
+        if(queryMetrics.getInListStrategy() != null){
+            operationHistograms.inListStrategies[queryMetrics.getInListStrategy().ordinal()].increment();
+        }
+    }
+
+    /**
+     * Method that gets the histogram of the latencies of an operation in a phase
+     * @param entityClass the class of the entity
+     * @param operation the operation, for example "getSome"
+     * @param queryPhase the phase
+     * @return the histogram, empty if the operation was not called
+     */
+    public Histogram getLatency(Class<?> entityClass, String operation, QueryPhase queryPhase) {
+        return get(entityClass, operation).phases[queryPhase.ordinal()];
+    }
+
+    /**
+     * Method that gets the histogram of the total latencies of an operation
+     * @param entityClass the class of the entity
+     * @param operation the operation, for example "getSome"
+     * @return the histogram, empty if the operation was not called
+     */
+    public Histogram getTotalLatency(Class<?> entityClass, String operation) {
+        return get(entityClass, operation).total;
+    }
+
+    /**
+     * Method that gets the histogram of the rows of an operation
+     * @param entityClass the class of the entity
+     * @param operation the operation, for example "getSome"
+     * @return the histogram, empty if the operation was not called
+     */
+    public Histogram getRows(Class<?> entityClass, String operation) {
+        return get(entityClass, operation).rows;
+    }
+
+    /**
+     * Method that gets the number of calls of an operation that used a strategy for their in lists
+     * @param entityClass the class of the entity
+     * @param operation the operation, for example "getSome"
+     * @param inListStrategy the strategy of the in lists
+     * @return the number of calls, zero if the operation was not called
+     */
+    public long getInListStrategyCount(Class<?> entityClass, String operation, InListStrategy inListStrategy) {
+        return get(entityClass, operation).inListStrategies[inListStrategy.ordinal()].sum();
+    }
+
+    /**
+     * Method that removes all the histograms
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * Method that gets the histograms of an operation
+     * @param entityClass the class of the entity
+     * @param operation the operation
+     * @return the histograms, empty if the operation was not called
+     */
+    private Histograms get(Class<?> entityClass, String operation) {
+        Histograms operationHistograms = histograms.get(new Key(entityClass, operation));
+        return operationHistograms != null ? operationHistograms : new Histograms();
+    }
+
+    /**
+     * Key of the histograms of an operation
+     * @param entityClass the class of the entity
+     * @param operation the operation
+     */
+    private record Key(Class<?> entityClass, String operation) {
+    }
+
+    /**
+     * Histograms of an operation
+     */
+    private static final class Histograms {
+
+        private final Histogram[] phases;
+        private final Histogram total;
+        private final Histogram rows;
+        private final LongAdder[] inListStrategies;
+
+        private Histograms() {
+            this.phases = new Histogram[QueryPhase.values().length];
+            for(int i = 0; i < phases.length; i++){
+                phases[i] = new Histogram();
+            }
+            this.total = new Histogram();
+            this.rows = new Histogram();
+            this.inListStrategies = new LongAdder[InListStrategy.values().length];
+            for(int i = 0; i < inListStrategies.length; i++){
+                inListStrategies[i] = new LongAdder();
+            }
+        }
+    }
+}
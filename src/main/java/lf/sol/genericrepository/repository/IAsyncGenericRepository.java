@@ -0,0 +1,189 @@
+package lf.sol.genericrepository.repository;
+
+import lf.sol.genericrepository.model.GenericEntity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+/**
+ * Asynchronous reads of a repository, where each call runs in its own thread and persistence context, so that
+ * independent reads run at the same time
+ * The results are detached entities, so the associations to use must be fetched with the fetch plan of the condition
+ * A condition must not be changed while its call is running
+ * Cancelling a future interrupts its call and cancels its running query, when the provider supports it
+ */
+public interface IAsyncGenericRepository<T extends GenericEntity, Object> {
+
+    /**
+     * Method that initializes a generic condition related to a specific entity
+     * It does not initialize a parallel generic condition for counting
+     * @return the generic condition
+     */
+    GenericCondition<T> initCondition();
+
+    /**
+     * Method that initializes a generic condition related to a specific entity, and it's parallel
+     * condition for counting the number of results
+     * @return the generic condition
+     */
+    GenericCondition<T> initConditionWithCount();
+
+    /**
+     * Method that initializes a generic condition related to a specific entity, with the predicates and the
+     * associations to fetch of a condition specification
+     * It does not initialize a parallel generic condition for counting
+     * @param conditionSpec the condition specification
+     * @return the generic condition
+     * @throws IllegalArgumentException if the specification is of another entity or some field does not exist in the
+     * entity
+     */
+    GenericCondition<T> initCondition(ConditionSpec<T> conditionSpec);
+
+    /**
+     * Method that initializes a generic condition related to a specific entity, and it's parallel condition for
+     * counting the number of results, with the predicates and the associations to fetch of a condition specification
+     * @param conditionSpec the condition specification
+     * @return the generic condition
+     * @throws IllegalArgumentException if the specification is of another entity or some field does not exist in the
+     * entity
+     */
+    GenericCondition<T> initConditionWithCount(ConditionSpec<T> conditionSpec);
+
+    /**
+     * Method that gets an entity by its ID
+     * @param id the ID
+     * @return the future of the entity, completed with null if it does not exist
+     */
+    CompletableFuture<T> getById(Object id);
+
+    /**
+     * Method that gets all the results of an entity
+     * @param genericOrders the generic orders to apply
+     * @return the future of the results
+     */
+    CompletableFuture<List<T>> getAll(GenericOrder... genericOrders);
+
+    /**
+     * Method that gets all the results of an entity with a specific condition
+     * @param genericCondition the condition to filter the results
+     * @param genericOrders the generic orders to apply
+     * @return the future of the results
+     */
+    CompletableFuture<List<T>> getAll(GenericCondition<T> genericCondition, GenericOrder... genericOrders);
+
+    /**
+     * Method that gets a page of results of an entity with its count
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param genericOrders the generic orders to apply
+     * @return the future of the page, completed with a NoCountPaginationException or a WrongPaginationParamsException
+     * if the pagination can't be done
+     */
+    CompletableFuture<Pagination<T>> getSome(int offset, int limit, GenericOrder... genericOrders);
+
+    /**
+     * Method that gets a page of results of an entity with a specific condition and its count
+     * @param genericCondition the condition to filter the results, initialized with count
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param genericOrders the generic orders to apply
+     * @return the future of the page, completed with a NoCountPaginationException or a WrongPaginationParamsException
+     * if the pagination can't be done
+     */
+    CompletableFuture<Pagination<T>> getSome(GenericCondition<T> genericCondition, int offset, int limit, GenericOrder... genericOrders);
+
+    /**
+     * Method that gets a page of results of an entity with a specific condition and its count, getting the count in
+     * a specific mode
+     * The lazy mode is not supported, because the persistence context of the call is closed when the call ends
+     * @param genericCondition the condition to filter the results, initialized with count
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the generic orders to apply
+     * @return the future of the page, completed with a NoCountPaginationException or a WrongPaginationParamsException
+     * if the pagination can't be done
+     * @throws IllegalArgumentException if the count mode is lazy
+     */
+    CompletableFuture<Pagination<T>> getSome(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders);
+
+    /**
+     * Method that gets total number of results of an entity
+     * @return the future of the number of results
+     */
+    CompletableFuture<Long> total();
+
+    /**
+     * Method that gets the total number of results of an entity with a specific condition
+     * @param genericCondition the condition to filter the results, initialized with count
+     * @return the future of the number of results
+     */
+    CompletableFuture<Long> total(GenericCondition<T> genericCondition);
+
+    /**
+     * Method that gets the first result of an entity
+     * @param genericOrders the generic orders to apply
+     * @return the future of the first result, completed with a NoSuchElementException if there are no results
+     */
+    CompletableFuture<T> getFirst(GenericOrder... genericOrders);
+
+    /**
+     * Method that gets the first result of an entity with a specific condition
+     * @param genericCondition the condition to filter the results
+     * @param genericOrders the generic orders to apply
+     * @return the future of the first result, completed with a NoSuchElementException if there are no results
+     */
+    CompletableFuture<T> getFirst(GenericCondition<T> genericCondition, GenericOrder... genericOrders);
+
+    /**
+     * Method that collects all the results of an entity with a specific condition, splitting the IDs into ranges
+     * that are read at the same time, each one in its own persistence context and in chunks
+     * The results of each range are collected in the order of the IDs, and the containers of the ranges are
+     * combined in the order of the ranges, so the result is the same of a sequential collection
+     * @param genericCondition the condition to filter the results, that is not changed
+     * @param partitions the number of ranges, that run at most with the concurrency of the repository
+     * @param chunkSize the number of results read in each query of a range
+     * @param collector the collector of the results
+     * @return the future of the collected result
+     * @throws IllegalArgumentException if the number of ranges or the chunk size are not greater than zero, or the ID
+     * is not an integer
+     */
+    <A, R> CompletableFuture<R> scan(GenericCondition<T> genericCondition, int partitions, int chunkSize, Collector<? super T, A, R> collector);
+
+    /**
+     * Method that collects all the results of an entity with a specific condition, splitting the values of an
+     * integer key field into ranges with the same width, that are read at the same time, each one in its own
+     * persistence context and in chunks
+     * The results of each range are collected in the order of the key, and the containers of the ranges are
+     * combined in the order of the ranges, so the result is the same of a sequential collection
+     * The results inserted after the lowest and the highest keys are read are not collected if their keys are out
+     * of those bounds
+     * @param genericCondition the condition to filter the results, that is not changed
+     * @param keyField the key field, an integer field
+     * @param partitions the number of ranges, that run at most with the concurrency of the repository
+     * @param chunkSize the number of results read in each query of a range
+     * @param collector the collector of the results
+     * @return the future of the collected result
+     * @throws IllegalArgumentException if the number of ranges or the chunk size are not greater than zero, or the
+     * key field is not an integer
+     */
+    <A, R> CompletableFuture<R> scan(GenericCondition<T> genericCondition, String keyField, int partitions, int chunkSize, Collector<? super T, A, R> collector);
+
+    /**
+     * Method that processes all the results of an entity with a specific condition, splitting the values of an
+     * integer key field into ranges with the same width, that are read at the same time, each one in its own
+     * persistence context and in chunks
+     * The consumer is called by the threads of all the ranges at the same time, so it must be thread-safe
+     * @param genericCondition the condition to filter the results, that is not changed
+     * @param keyField the key field, an integer field
+     * @param partitions the number of ranges, that run at most with the concurrency of the repository
+     * @param chunkSize the number of results read in each query of a range
+     * @param consumer the consumer of the results
+     * @return the future of the end of the scan
+     * @throws IllegalArgumentException if the number of ranges or the chunk size are not greater than zero, or the
+     * key field is not an integer
+     */
+    CompletableFuture<Void> scan(GenericCondition<T> genericCondition, String keyField, int partitions, int chunkSize, Consumer<? super T> consumer);
+}
@@ -2,9 +2,13 @@ package lf.sol.genericrepository.repository;
 
 import lf.sol.genericrepository.model.GenericEntity;
 import lf.sol.genericrepository.exception.NoCountPaginationException;
+import lf.sol.genericrepository.exception.WrongContinuationTokenException;
 import lf.sol.genericrepository.exception.WrongPaginationParamsException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface IGenericRepository<T extends GenericEntity, Object> {
 
@@ -22,6 +26,35 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
      */
     GenericCondition<T> initConditionWithCount();
 
+    /**
+     * Method that initializes a generic condition related to a specific entity, with the predicates and the
+     * associations to fetch of a condition specification
+     * It does not initialize a parallel generic condition for counting
+     * @param conditionSpec the condition specification
+     * @return the generic condition
+     * @throws IllegalArgumentException if the specification is of another entity or some field does not exist in the
+     * entity
+     */
+    GenericCondition<T> initCondition(ConditionSpec<T> conditionSpec);
+
+    /**
+     * Method that initializes a generic condition related to a specific entity, and it's parallel condition for
+     * counting the number of results, with the predicates and the associations to fetch of a condition specification
+     * @param conditionSpec the condition specification
+     * @return the generic condition
+     * @throws IllegalArgumentException if the specification is of another entity or some field does not exist in the
+     * entity
+     */
+    GenericCondition<T> initConditionWithCount(ConditionSpec<T> conditionSpec);
+
+    /**
+     * Method that validates and compiles fields of the entity (nested fields separated by dots) against the metamodel
+     * It's meant to be called at startup, so that the wrong fields fail before the first request
+     * @param fields the entity fields
+     * @throws IllegalArgumentException if some field does not exist in the entity
+     */
+    void validateFields(String... fields);
+
     /**
      * Method that saves an entity if it does not exist or refreshes it if already exists
      * @param entity the entity to save or update
@@ -35,6 +68,91 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
      */
     void saveNew(T entity);
 
+    /**
+     * Method that saves new entities in batches, flushing and clearing the persistence context after each batch
+     * The batch size is the JDBC batch size configured in the provider
+     * All the entities managed by the persistence context are detached after each batch
+     * @param entities the entities to save
+     * @return the report of the batches
+     */
+    BatchReport saveAllNew(Iterable<T> entities);
+
+    /**
+     * Method that saves new entities in batches, flushing and clearing the persistence context after each batch
+     * All the entities managed by the persistence context are detached after each batch
+     * @param entities the entities to save
+     * @param batchSize the number of entities of each batch
+     * @return the report of the batches
+     * @throws IllegalArgumentException if the batch size is not greater than zero
+     */
+    BatchReport saveAllNew(Iterable<T> entities, int batchSize);
+
+    /**
+     * Method that saves entities that do not exist or refreshes them if already exist in batches, flushing and
+     * clearing the persistence context after each batch
+     * The batch size is the JDBC batch size configured in the provider
+     * All the entities managed by the persistence context are detached after each batch, so the persisted
+     * entities are not returned
+     * Unlike saveOrRefresh, the entities are merged and the given instances stay detached, without the merged state
+     * (for example the generated IDs), so they should be read again if that state is needed
+     * @param entities the entities to save or update
+     * @return the report of the batches
+     */
+    BatchReport saveOrRefreshAll(Iterable<T> entities);
+
+    /**
+     * Method that saves entities that do not exist or refreshes them if already exist in batches, flushing and
+     * clearing the persistence context after each batch
+     * All the entities managed by the persistence context are detached after each batch, so the persisted
+     * entities are not returned
+     * Unlike saveOrRefresh, the existing entities are merged and the given instances stay detached, without the
+     * merged state, and without ordering the new entities are merged too, so they don't get their generated IDs
+     * @param entities the entities to save or update
+     * @param batchSize the number of entities of each batch
+     * @param orderInsertsAndUpdates flag that indicates if the new entities (without ID) are saved first and the
+     *                               existing entities after, so each batch only has one kind of statement and the
+     *                               driver can batch them
+     * @return the report of the batches
+     * @throws IllegalArgumentException if the batch size is not greater than zero
+     */
+    BatchReport saveOrRefreshAll(Iterable<T> entities, int batchSize, boolean orderInsertsAndUpdates);
+
+    /**
+     * Method that saves an entity if it does not exist or updates it if already exists with a native upsert
+     * statement, in one round trip and without reading the entity first
+     * The statement is derived from the mapping of the entity, and its references to other entities are written as
+     * foreign keys, without cascades
+     * An entity without ID is saved as a new entity, and if the database has no upsert dialect or the mapping of the
+     * entity is not supported the entity is merged
+     * The entity of the persistence context with the same ID is detached, because it doesn't have the written state
+     * @param entity the entity to save or update
+     */
+    void upsert(T entity);
+
+    /**
+     * Method that saves entities that do not exist or updates them if already exist with native upsert statements in
+     * batches, with many entities in each statement, clearing the persistence context after each batch
+     * The batch size is the JDBC batch size configured in the provider
+     * The entities without ID are saved as new entities after the others, and if the database has no upsert dialect
+     * or the mapping of the entity is not supported the entities are merged
+     * @param entities the entities to save or update
+     * @return the report of the batches
+     */
+    BatchReport upsertAll(Iterable<T> entities);
+
+    /**
+     * Method that saves entities that do not exist or updates them if already exist with native upsert statements in
+     * batches, with many entities in each statement, clearing the persistence context after each batch
+     * The entities without ID are saved as new entities after the others, and if the database has no upsert dialect
+     * or the mapping of the entity is not supported the entities are merged
+     * If some entities of a batch have the same ID, only the last one is written
+     * @param entities the entities to save or update
+     * @param batchSize the number of entities of each batch
+     * @return the report of the batches
+     * @throws IllegalArgumentException if the batch size is not greater than zero
+     */
+    BatchReport upsertAll(Iterable<T> entities, int batchSize);
+
     /**
      * Method that removes an entity
      * @param entity the entity to delete
@@ -42,19 +160,120 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
     void remove(T entity);
 
     /**
-     * Method that checks if an entity exists with the specific ID
+     * Method that deletes all the results of a condition with a single statement, without loading them
+     * The statement bypasses the persistence context, so the entities already loaded are not affected
+     * @param genericCondition the condition to filter the results to delete
+     * @return the number of deleted results
+     */
+    int deleteWhere(GenericCondition<T> genericCondition);
+
+    /**
+     * Method that updates some fields of all the results of a condition with a single statement, without loading them
+     * The statement bypasses the persistence context, so the entities already loaded are not affected
+     * @param genericCondition the condition to filter the results to update
+     * @param assignments the new values, by entity field (the fields of other entities can't be updated)
+     * @return the number of updated results
+     * @throws IllegalArgumentException if there are no assignments or some field does not exist in the entity
+     */
+    int updateWhere(GenericCondition<T> genericCondition, Map<String, ?> assignments);
+
+    /**
+     * Method that checks if an entity exists with the specific ID, only reading its ID
+     * If the repository has an entity cache the cached entities are not read from the database
      * @param id the ID
      * @return true if exists, false if not
      */
     boolean existsById(Object id);
 
+    /**
+     * Method that checks if some result matches a condition, reading at most one ID
+     * @param genericCondition the condition to filter the results
+     * @return true if some result exists, false if not
+     */
+    boolean exists(GenericCondition<T> genericCondition);
+
+    /**
+     * Method that counts the results of a condition until a cap, reading at most the cap number of IDs instead of
+     * counting all the results
+     * @param genericCondition the condition to filter the results
+     * @param cap the maximum number to count
+     * @return the number of results, or the cap if there are at least as many results as the cap
+     * @throws IllegalArgumentException if the cap is less than zero
+     */
+    long countUpTo(GenericCondition<T> genericCondition, int cap);
+
     /**
      * Method that gets an entity by its ID
+     * If the repository has an entity cache the entity is always a detached copy, not a managed entity, whether it
+     * was cached or read from the database, except inside a transaction that wrote the entity, where the cache is
+     * skipped and the managed entity is returned
      * @param id the ID
      * @return the entity
      */
     T getById(Object id);
 
+    /**
+     * Method that gets the entities of some IDs, in the same order of the IDs
+     * The cached entities, and with Hibernate the entities already loaded in the persistence context, are not read
+     * again, and the others are read with chunked in queries instead of one query per ID (the queries return the
+     * instances already loaded in the persistence context)
+     * @param ids the IDs
+     * @return the entities, in the order of the IDs (the IDs without entity are skipped)
+     */
+    List<T> getByIds(Collection<Object> ids);
+
+    /**
+     * Method that gets the entities of some IDs, in the same order of the IDs, reading a maximum number of IDs in
+     * each query
+     * @param ids the IDs
+     * @param chunkSize the maximum number of IDs in each query, to stay under the parameter limits of the database
+     * @return the entities, in the order of the IDs (the IDs without entity are skipped)
+     * @throws IllegalArgumentException if the chunk size is not greater than zero
+     */
+    List<T> getByIds(Collection<Object> ids, int chunkSize);
+
+    /**
+     * Method that gets the entities of some IDs by ID
+     * The cached entities, and with Hibernate the entities already loaded in the persistence context, are not read
+     * again, and the others are read with chunked in queries instead of one query per ID (the queries return the
+     * instances already loaded in the persistence context)
+     * @param ids the IDs
+     * @return the entities by ID, in the order of the IDs (the IDs without entity are not in the map)
+     */
+    Map<Object, T> getByIdsAsMap(Collection<Object> ids);
+
+    /**
+     * Method that gets the entities of some IDs by ID, reading a maximum number of IDs in each query
+     * @param ids the IDs
+     * @param chunkSize the maximum number of IDs in each query, to stay under the parameter limits of the database
+     * @return the entities by ID, in the order of the IDs (the IDs without entity are not in the map)
+     * @throws IllegalArgumentException if the chunk size is not greater than zero
+     */
+    Map<Object, T> getByIdsAsMap(Collection<Object> ids, int chunkSize);
+
+    /**
+     * Method that gets the entity cache of the repository, with its hit, miss and eviction counters
+     * The cache is invalidated by the saves and removals of the repository
+     * @return the entity cache, or null if the repository has no cache
+     */
+    EntityCache getEntityCache();
+
+    /**
+     * Method that gets the count cache of the repository
+     * The cached counts are invalidated by the writes of the repositories of the same entity, the counts of
+     * conditions over other entities may only expire
+     * @return the count cache, or null if the repository has no cache
+     */
+    CountCache getCountCache();
+
+    /**
+     * Method that gets the result cache of the repository, used by the paginations and the first results
+     * The cached results are invalidated by the writes of the repositories of the same entity, the results of
+     * conditions over other entities may only expire
+     * @return the result cache, or null if the repository has no cache
+     */
+    ResultCache getResultCache();
+
     /**
      * Method that gets all the results from an entity in a specific order
      * @param genericOrders the order condition
@@ -70,6 +289,75 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
      */
     List<T> getAll(GenericCondition<T> genericCondition, GenericOrder... genericOrders);
 
+    /**
+     * Method that gets the fields of a projection of all the results from an entity with a condition and in a
+     * specific order, without loading the entities
+     * @param genericCondition the condition to filter the results
+     * @param projection the fields to select and the type of the results
+     * @param genericOrders the order condition
+     * @return the projections of all the results from an entity
+     */
+    <P> List<P> getAll(GenericCondition<T> genericCondition, Projection<P> projection, GenericOrder... genericOrders);
+
+    /**
+     * Method that aggregates the results from an entity with a condition, grouped and filtered by the database, without
+     * loading the entities
+     * @param genericCondition the condition to filter the results
+     * @param aggregation the groups, aggregates and filters of the aggregates, and the type of the rows
+     * @param genericOrders the order condition, by group fields or aliases of aggregates (for example "-sum(age)")
+     * @return the rows of the aggregation, one for each group
+     */
+    <R> List<R> aggregate(GenericCondition<T> genericCondition, Aggregation<R> aggregation, GenericOrder... genericOrders);
+
+    /**
+     * Method that aggregates the results from an entity with a condition, grouped and filtered by the database, without
+     * loading the entities, reading only the first groups
+     * @param genericCondition the condition to filter the results
+     * @param aggregation the groups, aggregates and filters of the aggregates, and the type of the rows
+     * @param limit the maximum number of groups to read
+     * @param genericOrders the order condition, by group fields or aliases of aggregates (for example "-sum(age)")
+     * @return the rows of the aggregation, one for each of the first groups
+     * @throws WrongPaginationParamsException if the limit is not greater than zero
+     */
+    <R> List<R> aggregate(GenericCondition<T> genericCondition, Aggregation<R> aggregation, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException;
+
+    /**
+     * Method that streams all the results from an entity in a specific order, with bounded memory
+     * The results are fetched from an open cursor and detached in chunks after being processed, so the stream
+     * must be closed (for example with a try-with-resources) and its entities must not be expected to be managed
+     * Only the streamed entities are detached, since the persistence context is the one of the caller, so the
+     * associations loaded with them stay managed unless they cascade the detach, and should be lazy for long streams
+     * @param genericOrders the order condition
+     * @return the stream of the results
+     */
+    Stream<T> stream(GenericOrder... genericOrders);
+
+    /**
+     * Method that streams all the results from an entity with a condition and in a specific order, with bounded memory
+     * The results are fetched from an open cursor and detached in chunks after being processed, so the stream
+     * must be closed (for example with a try-with-resources) and its entities must not be expected to be managed
+     * Only the streamed entities are detached, since the persistence context is the one of the caller, so the
+     * associations loaded with them stay managed unless they cascade the detach, and should be lazy for long streams
+     * @param genericCondition the condition to filter the results
+     * @param genericOrders the order condition
+     * @return the stream of the results
+     */
+    Stream<T> stream(GenericCondition<T> genericCondition, GenericOrder... genericOrders);
+
+    /**
+     * Method that streams all the results from an entity with a condition and in a specific order, with bounded memory
+     * The results are fetched from an open cursor and detached in chunks after being processed, so the stream
+     * must be closed (for example with a try-with-resources) and its entities must not be expected to be managed
+     * Only the streamed entities are detached, since the persistence context is the one of the caller, so the
+     * associations loaded with them stay managed unless they cascade the detach, and should be lazy for long streams
+     * @param genericCondition the condition to filter the results
+     * @param chunkSize the number of results fetched from the database at once and kept in the persistence context
+     * @param genericOrders the order condition
+     * @return the stream of the results
+     * @throws IllegalArgumentException if the chunk size is not greater than zero
+     */
+    Stream<T> stream(GenericCondition<T> genericCondition, int chunkSize, GenericOrder... genericOrders);
+
     /**
      * Method that gets total number of results of an entity
      * @return the number of results of an entity
@@ -82,6 +370,13 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
      */
     Long total(GenericCondition<T> genericCondition);
 
+    /**
+     * Method that gets the estimated total number of results of an entity, from the statistics of its table
+     * If the repository has no count estimator, or there is no estimate, the results are counted
+     * @return the estimated number of results
+     */
+    Long estimatedTotal();
+
     /**
      * Method that gets some results from an entity in a specific order
      * @param offset the offset of the pagination
@@ -105,6 +400,95 @@ public interface IGenericRepository<T extends GenericEntity, Object> {
      */
     Pagination<T> getSome(GenericCondition<T> genericCondition, int offset, int limit, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException;
 
+    /**
+     * Method that gets some results from an entity in a specific order, getting the count in a specific mode
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the order condition
+     * @return some results of a specific entity
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    Pagination<T> getSome(int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException;
+
+    /**
+     * Method that gets some results from an entity with a generic condition in a specific order, getting the count
+     * in a specific mode
+     * @param genericCondition the condition to filter the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the order condition
+     * @return some results of a specific entity
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    Pagination<T> getSome(GenericCondition<T> genericCondition, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException;
+
+    /**
+     * Method that gets the fields of a projection of some results from an entity with a generic condition in a
+     * specific order, without loading the entities
+     * @param genericCondition the condition to filter the results
+     * @param projection the fields to select and the type of the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param genericOrders the order condition
+     * @return the projections of some results of a specific entity
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    <P> Pagination<P> getSome(GenericCondition<T> genericCondition, Projection<P> projection, int offset, int limit, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException;
+
+    /**
+     * Method that gets the fields of a projection of some results from an entity with a generic condition in a
+     * specific order, getting the count in a specific mode, without loading the entities
+     * @param genericCondition the condition to filter the results
+     * @param projection the fields to select and the type of the results
+     * @param offset the offset of the pagination
+     * @param limit the number of results to return
+     * @param countMode the way of getting the count
+     * @param genericOrders the order condition
+     * @return the projections of some results of a specific entity
+     * @throws NoCountPaginationException if the count operation was not started in the generic condition
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     */
+    <P> Pagination<P> getSome(GenericCondition<T> genericCondition, Projection<P> projection, int offset, int limit, CountMode countMode, GenericOrder... genericOrders) throws NoCountPaginationException, WrongPaginationParamsException;
+
+    /**
+     * Method that gets some results from an entity in a specific order, using a keyset (seek) pagination
+     * Each page starts right after the last row of the previous page, so every page costs about the same
+     * If the orders do not include the ID, it is added as the last order (in the direction of the last order)
+     * to keep the results stable
+     * The token is signed, so it is only accepted for the same entity and orders, and by the instances that share the
+     * key of the tokens (see GenericRepository.setContinuationTokenKey)
+     * @param continuationToken the token returned by the previous page, or null to get the first page
+     * @param limit the number of results to return
+     * @param genericOrders the order condition
+     * @return some results of a specific entity and the token to get the next page
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     * @throws WrongContinuationTokenException if the continuation token is invalid for these orders
+     */
+    KeysetPagination<T> getSomeAfter(String continuationToken, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException, WrongContinuationTokenException;
+
+    /**
+     * Method that gets some results from an entity with a generic condition in a specific order, using a keyset (seek)
+     * pagination
+     * Each page starts right after the last row of the previous page, so every page costs about the same
+     * If the orders do not include the ID, it is added as the last order (in the direction of the last order)
+     * to keep the results stable
+     * The token is signed, so it is only accepted for the same entity and orders, and by the instances that share the
+     * key of the tokens (see GenericRepository.setContinuationTokenKey)
+     * @param genericCondition the condition to filter the results, that is not changed
+     * @param continuationToken the token returned by the previous page, or null to get the first page
+     * @param limit the number of results to return
+     * @param genericOrders the order condition
+     * @return some results of a specific entity and the token to get the next page
+     * @throws WrongPaginationParamsException if the pagination arguments are invalid
+     * @throws WrongContinuationTokenException if the continuation token is invalid for these orders
+     */
+    KeysetPagination<T> getSomeAfter(GenericCondition<T> genericCondition, String continuationToken, int limit, GenericOrder... genericOrders) throws WrongPaginationParamsException, WrongContinuationTokenException;
+
     /**
      * Method that gets the first nth results from an entity in a specific order
      * @param nth the number of results to return from the first one
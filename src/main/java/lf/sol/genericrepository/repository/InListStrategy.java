@@ -0,0 +1,25 @@
+package lf.sol.genericrepository.repository;
+
+/**
+ * Strategies of the in lists of the conditions, from the cheapest to the most expensive
+ */
+public enum InListStrategy {
+
+    /**
+     * The lists up to the chunk size are padded to the next power of two (repeating their last value), so the lists
+     * of similar sizes generate the same statement and reuse the cached plans
+     */
+    PADDED,
+    /**
+     * The lists larger than the chunk size are bound whole, because they can't be split, for example if they are
+     * inside an "or", if their field is a collection, if the query aggregates the results, or if the results are
+     * ordered or paginated, which only the database can do with its collation and null ordering
+     */
+    WHOLE,
+    /**
+     * The lists larger than the chunk size are split into chunks, one query for each chunk, and the results of the
+     * chunks are merged (appended or summed) in memory, only for the unordered reads, the counts and the bulk
+     * statements
+     */
+    CHUNKED
+}
@@ -0,0 +1,250 @@
+package lf.sol.genericrepository.repository;
+
+import lf.sol.genericrepository.repository.ConditionClause.Operator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Compiler of the predicates and orders of the conditions into predicates and comparators of the objects in memory,
+ * so that the objects already loaded can be filtered and sorted without queries
+ * The predicates follow the semantics of the queries: the comparisons with null values are false, the fields that
+ * cross a null nested object have no values, and a predicate over a field that crosses a collection is true if some
+ * element matches it
+ * The strings are compared and matched with case, which may differ from the collation of the database
+ */
+final class InMemoryCondition {
+
+    private static final char LIKE_ANY_CHARACTER = '%';
+    private static final char LIKE_ONE_CHARACTER = '_';
+
+    private InMemoryCondition() {
+    }
+
+    /**
+     * Method that compiles predicates joined with AND into a predicate of the objects
+     * @param clauses the predicates
+     * @return the predicate of the objects
+     */
+    static <T> Predicate<T> toPredicate(List<ConditionClause> clauses) {
+        List<Predicate<Object>> predicates = clauses.stream().map(InMemoryCondition::toPredicate).toList();
+        return target -> {
+            for(Predicate<Object> predicate : predicates){
+                if(!predicate.test(target)){
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Method that compiles generic orders into a comparator of the objects
+     * The null values are lower than the other values, unless the order has the null values as the highest values
+     * @param genericOrders the generic orders
+     * @return the comparator of the objects
+     */
+    static <T> Comparator<T> toComparator(GenericOrder... genericOrders) {
+        Comparator<Object> comparator = (first, second) -> 0;
+        for(GenericOrder genericOrder : genericOrders){
+            FieldAccessor accessor = FieldAccessor.of(genericOrder.getField());
+            boolean nullsHighest = genericOrder.isNullsHighest();
+            Comparator<Object> fieldComparator = (first, second) -> compareNullable(accessor.value(first), accessor.value(second), nullsHighest);
+            comparator = comparator.thenComparing(genericOrder.isAscending() ? fieldComparator : fieldComparator.reversed());
+        }
+        Comparator<Object> objectComparator = comparator;
+        return objectComparator::compare;
+    }
+
+    /**
+     * Method that compiles a predicate into a predicate of the objects
+     * @param clause the predicate
+     * @return the predicate of the objects
+     */
+    private static Predicate<Object> toPredicate(ConditionClause clause) {
+        Object[] values = clause.getValues();
+        return switch(clause.getOperator()){
+            case OR -> {
+                List<Predicate<Object>> groups = clause.getGroups().stream().map(InMemoryCondition::<Object>toPredicate).toList();
+                yield target -> groups.stream().anyMatch(group -> group.test(target));
+            }
+            case DISJUNCTION_LIKE -> {
+                Pattern pattern = toPattern((String) values[0]);
+                List<FieldAccessor> accessors = Arrays.stream(clause.getFields()).map(FieldAccessor::of).toList();
+                yield target -> accessors.stream().anyMatch(accessor -> anyValue(accessor, target,
+                        value -> value != null && pattern.matcher(value.toString()).matches()));
+            }
+            default -> {
+                FieldAccessor accessor = FieldAccessor.of(clause.getFields()[0]);
+                Predicate<Object> valuePredicate = toValuePredicate(clause.getOperator(), values);
+                yield target -> anyValue(accessor, target, valuePredicate);
+            }
+        };
+    }
+
+    /**
+     * Method that compiles an operator and its values into a predicate of the values of a field
+     * @param operator the operator
+     * @param values the values of the operator
+     * @return the predicate of the values of a field
+     */
+    private static Predicate<Object> toValuePredicate(Operator operator, Object[] values) {
+        return switch(operator){
+            case EQUAL -> value -> value != null && equalValues(value, values[0]);
+            case NOT_EQUAL -> value -> value != null && !equalValues(value, values[0]);
+            case IS_TRUE -> Boolean.TRUE::equals;
+            case IS_FALSE -> Boolean.FALSE::equals;
+            case IS_NULL -> Objects::isNull;
+            case IS_NOT_NULL -> Objects::nonNull;
+            case GREATER -> value -> value != null && compare(value, values[0]) > 0;
+            case GREATER_OR_EQUAL -> value -> value != null && compare(value, values[0]) >= 0;
+            case LESS -> value -> value != null && compare(value, values[0]) < 0;
+            case LESS_OR_EQUAL -> value -> value != null && compare(value, values[0]) <= 0;
+            case BETWEEN -> value -> value != null && compare(value, values[0]) >= 0 && compare(value, values[1]) <= 0;
+            case IN -> {
+                Collection<?> inValues = (Collection<?>) values[0];
+                yield value -> value != null && inValues.stream().anyMatch(inValue -> equalValues(value, inValue));
+            }
+            case LIKE -> {
+                Pattern pattern = toPattern((String) values[0]);
+                yield value -> value != null && pattern.matcher(value.toString()).matches();
+            }
+            default -> throw new IllegalStateException("Unexpected operator " + operator);
+        };
+    }
+
+    /**
+     * Method that checks if some value of a field of an object matches a predicate
+     * @param accessor the reader of the field
+     * @param target the object
+     * @param valuePredicate the predicate of the values
+     * @return true if some value matches, false if not
+     */
+    private static boolean anyValue(FieldAccessor accessor, Object target, Predicate<Object> valuePredicate) {
+        for(Object value : accessor.values(target)){
+            if(valuePredicate.test(value)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method that checks if two values are equal, comparing the numbers by their value whatever their types
+     * @param value the value of the field
+     * @param other the value to compare
+     * @return true if they are equal, false if not
+     */
+    private static boolean equalValues(Object value, Object other) {
+        if(value instanceof Number number && other instanceof Number otherNumber){
+            return compareNumbers(number, otherNumber) == 0;
+        }
+        return value.equals(other);
+    }
+
+    /**
+     * Method that compares two values that can be null
+     * @param value the first value
+     * @param other the second value
+     * @param nullsHighest true if the null values are higher than the other values, false if they are lower
+     * @return the comparison of the values
+     */
+    private static int compareNullable(Object value, Object other, boolean nullsHighest) {
+        if(value == null || other == null){
+            int nullComparison = nullsHighest ? 1 : -1;
+            return value == null ? (other == null ? 0 : nullComparison) : -nullComparison;
+        }
+        return compare(value, other);
+    }
+
+    /**
+     * Method that compares two values, comparing the numbers by their value whatever their types
+     * @param value the value of the field
+     * @param other the value to compare
+     * @return the comparison of the values
+     * @throws IllegalArgumentException if the values can't be compared
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object other) {
+        if(value instanceof Number number && other instanceof Number otherNumber){
+            return compareNumbers(number, otherNumber);
+        }
+        if(value instanceof Comparable comparable && value.getClass().isInstance(other)){
+            return comparable.compareTo(other);
+        }
+        throw new IllegalArgumentException("The values " + value + " and " + other + " can't be compared");
+    }
+
+    /**
+     * Method that compares two numbers by their value
+     * @param number the first number
+     * @param other the second number
+     * @return the comparison of the numbers
+     */
+    private static int compareNumbers(Number number, Number other) {
+        if(isInteger(number) && isInteger(other)){
+            return Long.compare(number.longValue(), other.longValue());
+        }
+        if((number instanceof Double || number instanceof Float) && (other instanceof Double || other instanceof Float)){
+            return Double.compare(number.doubleValue(), other.doubleValue());
+        }
+        return toBigDecimal(number).compareTo(toBigDecimal(other));
+    }
+
+    /**
+     * Method that checks if a number is an integer that fits in a long
+     * @param number the number
+     * @return true if it is an integer, false if not
+     */
+    private static boolean isInteger(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * Method that converts a number into a big decimal
+     * @param number the number
+     * @return the big decimal
+     */
+    private static BigDecimal toBigDecimal(Number number) {
+        if(number instanceof BigDecimal bigDecimal){
+            return bigDecimal;
+        }
+        if(number instanceof BigInteger bigInteger){
+            return new BigDecimal(bigInteger);
+        }
+        return isInteger(number) ? BigDecimal.valueOf(number.longValue()) : new BigDecimal(number.toString());
+    }
+
+    /**
+     * Method that converts a like pattern into a regular expression, where "%" matches any text and "_" matches any
+     * character
+     * @param likePattern the like pattern
+     * @return the regular expression
+     */
+    private static Pattern toPattern(String likePattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for(char character : likePattern.toCharArray()){
+            if(character == LIKE_ANY_CHARACTER || character == LIKE_ONE_CHARACTER){
+                if(!literal.isEmpty()){
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(character == LIKE_ANY_CHARACTER ? ".*" : ".");
+            }else{
+                literal.append(character);
+            }
+        }
+        if(!literal.isEmpty()){
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
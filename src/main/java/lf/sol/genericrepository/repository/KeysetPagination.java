@@ -0,0 +1,27 @@
+package lf.sol.genericrepository.repository;
+
+import lf.sol.genericrepository.model.GenericEntity;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+@Getter
+public class KeysetPagination<T extends GenericEntity> {
+
+    private final List<T> results;
+    private final String continuationToken;
+
+    protected KeysetPagination(List<T> results, String continuationToken) {
+        this.results = Collections.unmodifiableList(results);
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Method that checks if there are more results after this page
+     * @return true if there are more results, false if not
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+}
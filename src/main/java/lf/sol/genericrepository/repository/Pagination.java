@@ -1,18 +1,64 @@
 package lf.sol.genericrepository.repository;
 
-import lf.sol.genericrepository.model.GenericEntity;
 import lombok.Getter;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
-@Getter
-public class Pagination<T extends GenericEntity> {
+/**
+ * Page of results with the total number of results, which can be resolved lazily
+ * The results can't be modified, and they are not copied, so the pagination only wraps the list read by the query
+ * @param <T> the type of the results
+ */
+public class Pagination<T> {
 
+    @Getter
     private final List<T> results;
-    private final Long count;
+    private Supplier<Long> countSupplier;
+    private volatile Long count;
+    @Getter
+    private final boolean estimated;
 
     protected Pagination(List<T> results, Long count) {
-        this.results = results;
+        this(results, count, false);
+    }
+
+    protected Pagination(List<T> results, Long count, boolean estimated) {
+        this.results = Collections.unmodifiableList(results);
         this.count = count;
+        this.estimated = estimated;
+    }
+
+    protected Pagination(List<T> results, Supplier<Long> countSupplier) {
+        this.results = Collections.unmodifiableList(results);
+        this.countSupplier = countSupplier;
+        this.estimated = false;
+    }
+
+    /**
+     * Method that gets the total number of results, resolving it first if it is a lazy count
+     * @return the total number of results
+     */
+    public Long getCount() {
+        Long resolvedCount = count;
+        if(resolvedCount == null){
+            synchronized(this){
+                if(count == null){
+                    count = countSupplier.get();
+                    countSupplier = null;
+                }
+                resolvedCount = count;
+            }
+        }
+        return resolvedCount;
+    }
+
+    /**
+     * Method that checks if the total number of results is already resolved
+     * @return true if the count is resolved, false if it is a lazy count not requested yet
+     */
+    public boolean isCountResolved() {
+        return count != null;
     }
 }
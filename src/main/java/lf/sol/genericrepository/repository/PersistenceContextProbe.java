@@ -0,0 +1,73 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Lookup of the entities already loaded in the persistence context of an entity manager, by ID, without creating
+ * references or reading the database
+ * The JPA has no such lookup, so only the Hibernate sessions are probed, by reflection to not depend on the provider
+ */
+final class PersistenceContextProbe {
+
+    private static final String SESSION_CLASS = "org.hibernate.engine.spi.SharedSessionContractImplementor";
+    private static final String PERSISTENCE_CONTEXT_CLASS = "org.hibernate.engine.spi.PersistenceContext";
+    private static final String ENTITY_KEY_CLASS = "org.hibernate.engine.spi.EntityKey";
+    private static final String ENTITY_PERSISTER_CLASS = "org.hibernate.persister.entity.EntityPersister";
+
+    private final Object session;
+    private final Object persistenceContext;
+    private final Object entityPersister;
+    private final Method generateEntityKey;
+    private final Method getEntity;
+
+    private PersistenceContextProbe(Object session, Object persistenceContext, Object entityPersister, Method generateEntityKey, Method getEntity) {
+        this.session = session;
+        this.persistenceContext = persistenceContext;
+        this.entityPersister = entityPersister;
+        this.generateEntityKey = generateEntityKey;
+        this.getEntity = getEntity;
+    }
+
+    /**
+     * Method that creates a probe of the persistence context of an entity manager for an entity
+     * @param entityManager the entity manager
+     * @param entityClass the class of the entity
+     * @return the probe, or null if the provider can't be probed
+     */
+    static PersistenceContextProbe of(EntityManager entityManager, Class<?> entityClass){
+        try{
+            ClassLoader classLoader = entityManager.getClass().getClassLoader();
+            Class<?> sessionClass = Class.forName(SESSION_CLASS, false, classLoader);
+            Class<?> persistenceContextClass = Class.forName(PERSISTENCE_CONTEXT_CLASS, false, classLoader);
+            Class<?> entityPersisterClass = Class.forName(ENTITY_PERSISTER_CLASS, false, classLoader);
+            Object session = entityManager.unwrap(sessionClass);
+            return new PersistenceContextProbe(session,
+                    sessionClass.getMethod("getPersistenceContextInternal").invoke(session),
+                    sessionClass.getMethod("getEntityPersister", String.class, Object.class).invoke(session, entityClass.getName(), null),
+                    sessionClass.getMethod("generateEntityKey", Object.class, entityPersisterClass),
+                    persistenceContextClass.getMethod("getEntity", Class.forName(ENTITY_KEY_CLASS, false, classLoader)));
+        }catch(ReflectiveOperationException | RuntimeException | LinkageError e){
+            // the provider is not Hibernate
+            return null;
+        }
+    }
+
+    /**
+     * Method that gets an entity loaded in the persistence context
+     * @param id the ID of the entity
+     * @param entityClass the class of the entity
+     * @return the entity, or null if it is not loaded or it is of another class
+     */
+    <T> T getLoaded(Object id, Class<T> entityClass){
+        try{
+            Object entity = getEntity.invoke(persistenceContext, generateEntityKey.invoke(session, id, entityPersister));
+            return entityClass.isInstance(entity) ? entityClass.cast(entity) : null;
+        }catch(IllegalAccessException | InvocationTargetException e){
+            // the entity is read by the query
+            return null;
+        }
+    }
+}
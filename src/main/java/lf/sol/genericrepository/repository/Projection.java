@@ -0,0 +1,106 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields of an entity (nested fields separated by dots) selected by a query instead of the whole entity
+ * Only the selected columns are read and no entities or proxies are created, the results are records (or classes
+ * with a constructor of the same fields), tuples or maps
+ * @param <P> the type of the results
+ */
+public final class Projection<P> {
+
+    /**
+     * The kinds of results of the projections
+     */
+    enum Kind {
+        CONSTRUCTOR, TUPLE, MAP
+    }
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Kind kind;
+    @Getter(AccessLevel.PACKAGE)
+    private final Class<?> resultClass;
+    @Getter(AccessLevel.PACKAGE)
+    private final String[] fields;
+
+    private Projection(Kind kind, Class<?> resultClass, String[] fields) {
+        if(fields.length == 0){
+            throw new IllegalArgumentException("The projection must select at least one field");
+        }
+        this.kind = kind;
+        this.resultClass = resultClass;
+        this.fields = fields.clone();
+    }
+
+    /**
+     * Method that generates a projection into a record, or into a class with a constructor of the same fields
+     * The fields are passed to the constructor in the same order
+     * @param resultClass the record class
+     * @param fields the entity fields, in the order of the constructor parameters
+     * @return the projection
+     */
+    public static <P> Projection<P> of(Class<P> resultClass, String... fields){
+        return new Projection<>(Kind.CONSTRUCTOR, resultClass, fields);
+    }
+
+    /**
+     * Method that generates a projection into tuples, where each value has the entity field as alias
+     * @param fields the entity fields
+     * @return the projection
+     */
+    public static Projection<Tuple> tuple(String... fields){
+        return new Projection<>(Kind.TUPLE, Tuple.class, fields);
+    }
+
+    /**
+     * Method that generates a projection into maps, where each value has the entity field as key
+     * The maps keep the order of the fields
+     * @param fields the entity fields
+     * @return the projection
+     */
+    public static Projection<Map<String, Object>> map(String... fields){
+        return new Projection<>(Kind.MAP, Tuple.class, fields);
+    }
+
+    /**
+     * Method that generates the shape of the projection, which identifies its selection in the generated queries
+     * @return the shape of the projection
+     */
+    String shape(){
+        return kind + "(" + resultClass.getName() + ":" + String.join(",", fields) + ")";
+    }
+
+    /**
+     * Method that converts the rows read by the query into the results of the projection
+     * @param rows the rows read by the query
+     * @return the results
+     */
+    @SuppressWarnings("unchecked")
+    List<P> toResults(List<?> rows){
+        if(kind != Kind.MAP){
+            return (List<P>) rows;
+        }
+        return (List<P>) rows.stream().map(row -> toMap((Tuple) row)).toList();
+    }
+
+    /**
+     * Method that converts a tuple into a map, by alias
+     * @param tuple the tuple
+     * @return the map
+     */
+    static Map<String, Object> toMap(Tuple tuple){
+        Map<String, Object> values = new LinkedHashMap<>();
+        for(TupleElement<?> element : tuple.getElements()){
+            values.put(element.getAlias(), tuple.get(element));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,71 @@
+package lf.sol.genericrepository.repository;
+
+import lombok.Getter;
+
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a call of a repository, with its time in each phase, its number of rows and the most expensive
+ * strategy of the in lists of its queries (null if they have no in lists)
+ */
+public final class QueryMetrics {
+
+    @Getter
+    private final Class<?> entityClass;
+    @Getter
+    private final String operation;
+    @Getter
+    private final long rows;
+    @Getter
+    private final boolean failed;
+    @Getter
+    private final InListStrategy inListStrategy;
+    private final long[] phaseNanos;
+    private final Supplier<String> conditionDescriber;
+    private String condition;
+
+    QueryMetrics(Class<?> entityClass, String operation, long rows, boolean failed, InListStrategy inListStrategy,
+                 long[] phaseNanos, Supplier<String> conditionDescriber) {
+        this.entityClass = entityClass;
+        this.operation = operation;
+        this.rows = rows;
+        this.failed = failed;
+        this.inListStrategy = inListStrategy;
+        this.phaseNanos = phaseNanos;
+        this.conditionDescriber = conditionDescriber;
+    }
+
+    /**
+     * Method that gets the time of the call in a phase
+     * @param queryPhase the phase
+     * @return the time in nanoseconds
+     */
+    public long getNanos(QueryPhase queryPhase) {
+        return phaseNanos[queryPhase.ordinal()];
+    }
+
+    /**
+     * Method that gets the total time of the call
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos() {
+        long totalNanos = 0;
+        for(long nanos : phaseNanos){
+            totalNanos += nanos;
+        }
+        return totalNanos;
+    }
+
+    /**
+     * Method that gets the description of the condition of the call, with its fields, operators and orders but
+     * without its values
+     * The description is only generated when requested
+     * @return the redacted description of the condition
+     */
+    public synchronized String getCondition() {
+        if(condition == null){
+            condition = conditionDescriber.get();
+        }
+        return condition;
+    }
+}
@@ -0,0 +1,24 @@
+package lf.sol.genericrepository.repository;
+
+/**
+ * The phases of the time of a repository call
+ */
+public enum QueryPhase {
+
+    /**
+     * Building the criteria queries and preparing the call, including the lookups of the caches
+     */
+    BUILD,
+
+    /**
+     * Running the queries and the writes in the provider
+     * The providers map the rows into entities while running the queries, so that time is included in this phase
+     */
+    EXECUTE,
+
+    /**
+     * Turning the results of the provider into the results of the call, such as mapping the rows of a projection
+     * or restoring and storing the cached entities
+     */
+    HYDRATE
+}
@@ -0,0 +1,120 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.function.Supplier;
+
+/**
+ * Timer of the phases of a repository call, bound to the thread of the call
+ * The time outside the measured work counts as building time, and the nested calls of the repository are measured
+ * as part of the outer call
+ */
+final class QueryTimer {
+
+    private static final ThreadLocal<QueryTimer> CURRENT = new ThreadLocal<>();
+    private final long[] phaseNanos;
+    private QueryPhase queryPhase;
+    private long phaseStart;
+    private long rows;
+    private InListStrategy inListStrategy;
+
+    private QueryTimer() {
+        this.phaseNanos = new long[QueryPhase.values().length];
+        this.queryPhase = QueryPhase.BUILD;
+        this.phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Method that starts the timer of a call in the current thread
+     * @return the timer, or null if a call is already measured in the current thread
+     */
+    static QueryTimer start(){
+        if(CURRENT.get() != null){
+            return null;
+        }
+        QueryTimer queryTimer = new QueryTimer();
+        CURRENT.set(queryTimer);
+        return queryTimer;
+    }
+
+    /**
+     * Method that runs work in a phase of the call measured in the current thread, if any
+     * @param queryPhase the phase of the work
+     * @param work the work
+     * @return the result of the work
+     */
+    static <R> R measure(QueryPhase queryPhase, Supplier<R> work){
+        QueryTimer queryTimer = CURRENT.get();
+        if(queryTimer == null){
+            return work.get();
+        }
+        QueryPhase previousPhase = queryTimer.switchTo(queryPhase);
+        try{
+            return work.get();
+        }finally{
+            queryTimer.switchTo(previousPhase);
+        }
+    }
+
+    /**
+     * Method that runs work without result in a phase of the call measured in the current thread, if any
+     * @param queryPhase the phase of the work
+     * @param work the work
+     */
+    static void measure(QueryPhase queryPhase, Runnable work){
+        measure(queryPhase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Method that sets the number of rows of the call measured in the current thread, if any
+     * @param rows the number of rows
+     */
+    static void rows(long rows){
+        QueryTimer queryTimer = CURRENT.get();
+        if(queryTimer != null){
+            queryTimer.rows = rows;
+        }
+    }
+
+    /**
+     * Method that registers the strategy of the in lists of a query of the call measured in the current thread, if
+     * any, keeping the most expensive strategy of the call
+     * @param inListStrategy the strategy, or null if the query has no in lists
+     */
+    static void inListStrategy(InListStrategy inListStrategy){
+        QueryTimer queryTimer = CURRENT.get();
+        if(queryTimer != null && inListStrategy != null
+                && (queryTimer.inListStrategy == null || inListStrategy.compareTo(queryTimer.inListStrategy) > 0)){
+            queryTimer.inListStrategy = inListStrategy;
+        }
+    }
+
+    /**
+     * Method that stops the timer and removes it from the current thread
+     * @param entityClass the class of the entity
+     * @param operation the operation of the call
+     * @param failed true if the call failed, false if not
+     * @param conditionDescriber the generator of the redacted description of the condition
+     * @return the metrics of the call
+     */
+    QueryMetrics stop(Class<?> entityClass, String operation, boolean failed, Supplier<String> conditionDescriber){
+        switchTo(queryPhase);
+        CURRENT.remove();
+        return new QueryMetrics(entityClass, operation, rows, failed, inListStrategy, phaseNanos, conditionDescriber);
+    }
+
+    /**
+     * Method that adds the time of the current phase and switches to another phase
+     * @param nextPhase the next phase
+     * @return the previous phase
+     */
+    private QueryPhase switchTo(QueryPhase nextPhase){
+        long now = System.nanoTime();
+        phaseNanos[queryPhase.ordinal()] += now - phaseStart;
+        phaseStart = now;
+        QueryPhase previousPhase = queryPhase;
+        queryPhase = nextPhase;
+        return previousPhase;
+    }
+}
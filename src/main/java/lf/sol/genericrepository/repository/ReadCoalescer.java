@@ -0,0 +1,155 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalescer of the identical reads of the repositories that run at the same time (single flight), so that only the
+ * first read (the leader) queries the database and the others (the followers) wait for it and get a detached copy
+ * of its results
+ * A read only follows a read started after the last write of the entity by the repositories, and the reads of a
+ * failed leader are not shared, so each follower reads alone
+ * The reads are not coalesced while a transaction that wrote the entity is open or if the transaction of the reader
+ * has writes, so a read never gets the uncommitted rows of another transaction, but a leader in a transaction with
+ * snapshot isolation (repeatable read or serializable) may share rows that the snapshot of a follower can't see
+ * The followers get detached copies even if their persistence context has the entities, and the lazy associations
+ * not loaded by the leader can't be loaded through the copies
+ */
+public final class ReadCoalescer {
+
+    private static final Object NOT_SHARED = new Object();
+
+    private final Map<Object, Flight> flights;
+    private final LongAdder leaderCalls;
+    private final LongAdder collapsedCalls;
+
+    private ReadCoalescer() {
+        this.flights = new ConcurrentHashMap<>();
+        this.leaderCalls = new LongAdder();
+        this.collapsedCalls = new LongAdder();
+    }
+
+    /**
+     * Method that generates a read coalescer, that can be shared by the repositories of many entities
+     * @return the read coalescer
+     */
+    public static ReadCoalescer create(){
+        return new ReadCoalescer();
+    }
+
+    /**
+     * Method that gets the number of reads that queried the database for themselves and for their followers
+     * @return the number of leader reads
+     */
+    public long getLeaderCalls() {
+        return leaderCalls.sum();
+    }
+
+    /**
+     * Method that gets the number of reads that got the results of a leader instead of querying the database
+     * @return the number of collapsed reads
+     */
+    public long getCollapsedCalls() {
+        return collapsedCalls.sum();
+    }
+
+    /**
+     * Method that gets the number of reads running in this moment that can be followed
+     * @return the number of reads in flight
+     */
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * Method that reads through the coalescer, following the identical read in flight if there is one
+     * @param key the key of the read, equal for the identical reads
+     * @param writeVersion the version of the writes of the entity before reading, or PENDING to read alone
+     * @param read the read
+     * @param share the conversion of the results of a leader into a form that can be shared with its followers, that
+     *              doesn't share state with the results
+     * @param restore the conversion of the shared form into the results of a follower
+     * @return the results
+     */
+    @SuppressWarnings("unchecked")
+    <R, S> R read(Object key, long writeVersion, Supplier<R> read, Function<R, S> share, Function<S, R> restore){
+        if(writeVersion == WriteVersions.PENDING){
+            return read.get();
+        }
+        Flight flight = new Flight(writeVersion);
+        Flight inFlight = flights.putIfAbsent(key, flight);
+        if(inFlight == null){
+            return lead(key, flight, read, share);
+        }
+        if(inFlight.writeVersion == writeVersion){
+            inFlight.followers.incrementAndGet();
+            Object shared = inFlight.shared.join();
+            if(shared != NOT_SHARED){
+                collapsedCalls.increment();
+                return restore.apply((S) shared);
+            }
+        }
+
+        // the reads that can't follow the read in flight read alone
+        return read.get();
+    }
+
+    /**
+     * Method that reads as the leader of a flight, sharing the results if some read is following it
+     * @param key the key of the read
+     * @param flight the flight of the read
+     * @param read the read
+     * @param share the conversion of the results into the shared form
+     * @return the results
+     */
+    private <R, S> R lead(Object key, Flight flight, Supplier<R> read, Function<R, S> share){
+        leaderCalls.increment();
+        Object shared = NOT_SHARED;
+        try{
+            R results = read.get();
+
+            // the flight is closed first, so the followers that join after the count read alone
+            flights.remove(key, flight);
+            if(flight.followers.get() > 0){
+                try{
+                    shared = share.apply(results);
+                }catch(RuntimeException e){
+                    // the results can't be shared, so the followers read alone
+                }
+            }
+            return results;
+        }finally{
+            flights.remove(key, flight);
+            flight.shared.complete(shared);
+        }
+    }
+
+    /**
+     * Key of the reads of an entity by ID
+     * @param entityClass the class of the entity
+     * @param id the ID
+     */
+    record IdKey(Class<?> entityClass, Object id) {
+    }
+
+    /**
+     * Read in flight
+     */
+    private static final class Flight {
+
+        private final long writeVersion;
+        private final AtomicInteger followers;
+        private final CompletableFuture<Object> shared;
+
+        private Flight(long writeVersion) {
+            this.writeVersion = writeVersion;
+            this.followers = new AtomicInteger();
+            this.shared = new CompletableFuture<>();
+        }
+    }
+}
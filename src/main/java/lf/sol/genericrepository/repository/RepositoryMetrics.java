@@ -0,0 +1,27 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.List;
+
+/**
+ * Sink of the metrics of the calls of a repository, to connect the repository to any metrics library
+ * The metrics are recorded in the thread of the call, after the call, so the sinks must be fast and thread-safe
+ */
+@FunctionalInterface
+public interface RepositoryMetrics {
+
+    /**
+     * Method that records the metrics of a call
+     * @param queryMetrics the metrics of the call
+     */
+    void record(QueryMetrics queryMetrics);
+
+    /**
+     * Method that generates a sink that records the metrics in several sinks, in order
+     * @param sinks the sinks
+     * @return the metrics sink
+     */
+    static RepositoryMetrics of(RepositoryMetrics... sinks){
+        List<RepositoryMetrics> allSinks = List.of(sinks);
+        return queryMetrics -> allSinks.forEach(sink -> sink.record(queryMetrics));
+    }
+}
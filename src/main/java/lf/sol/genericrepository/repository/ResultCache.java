@@ -0,0 +1,175 @@
+package lf.sol.genericrepository.repository;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the results of the queries of a repository, by description of the condition, orders and page window,
+ * with least recently used eviction and a time to live
+ * Only the IDs of the results (and the count of the paginations) are cached, the entities are restored by ID from
+ * the persistence context, the entity cache or the database
+ * The results of an entity are invalidated by every write of the repositories of that entity and by the completion of
+ * its transaction, and the results read while a transaction that wrote the entity is open are not cached
+ */
+public final class ResultCache {
+
+    private final int maxEntries;
+    private final long maxIds;
+    private final long ttlNanos;
+    private final Map<Key, Entry> results;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private long ids;
+
+    private ResultCache(int maxEntries, long maxIds, Duration ttl) {
+        if(maxEntries <= 0 || maxIds <= 0 || ttl.isNegative() || ttl.isZero()){
+            throw new IllegalArgumentException("The bounds and the time to live of the cache must be greater than zero");
+        }
+        this.maxEntries = maxEntries;
+        this.maxIds = maxIds;
+        this.ttlNanos = ttl.toNanos();
+        this.results = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Method that generates a result cache
+     * @param maxEntries the maximum number of cached results
+     * @param maxIds the maximum number of IDs of all the cached results
+     * @param ttl the time to live of each cached result
+     * @return the result cache
+     */
+    public static ResultCache of(int maxEntries, long maxIds, Duration ttl){
+        return new ResultCache(maxEntries, maxIds, ttl);
+    }
+
+    /**
+     * Method that gets the number of lookups found in the cache
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Method that gets the number of lookups not found (or expired) in the cache
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Method that gets the number of results removed from the cache to respect its bounds
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Method that gets the number of cached results, including the expired ones not removed yet
+     * @return the number of cached results
+     */
+    public synchronized int getSize() {
+        return results.size();
+    }
+
+    /**
+     * Method that gets cached results
+     * @param key the key of the results
+     * @param writeVersion the current version of the writes of the entity
+     * @return the results, or null if they are not cached, they are expired or the entity was written after reading
+     */
+    Entry get(Key key, long writeVersion){
+        if(writeVersion == WriteVersions.PENDING){
+            misses.increment();
+            return null;
+        }
+        Entry entry;
+        synchronized(this){
+            entry = results.get(key);
+            if(entry != null && (entry.expiresAt - System.nanoTime() <= 0
+                    || entry.writeVersion != writeVersion)){
+                remove(key);
+                entry = null;
+            }
+        }
+        (entry == null ? misses : hits).increment();
+        return entry;
+    }
+
+    /**
+     * Method that caches results, unless they were read while a transaction that wrote the entity was open
+     * @param key the key of the results
+     * @param resultIds the IDs of the results
+     * @param count the count of the pagination, or null if there is no count
+     * @param estimated true if the count is estimated, false if not
+     * @param writeVersion the version of the writes of the entity before reading
+     */
+    synchronized void put(Key key, List<Object> resultIds, Long count, boolean estimated, long writeVersion){
+        if(writeVersion == WriteVersions.PENDING){
+            return;
+        }
+        remove(key);
+        results.put(key, new Entry(List.copyOf(resultIds), count, estimated, System.nanoTime() + ttlNanos, writeVersion));
+        ids += resultIds.size();
+
+        // evicts the least recently used results
+        Iterator<Entry> eldest = results.values().iterator();
+        while((results.size() > maxEntries || ids > maxIds) && eldest.hasNext()){
+            ids -= eldest.next().ids.size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Method that removes all the results from the cache
+     */
+    public synchronized void invalidateAll(){
+        results.clear();
+        ids = 0;
+    }
+
+    /**
+     * Method that removes results, the lock of the cache must be held
+     * @param key the key of the results
+     */
+    private void remove(Key key){
+        Entry entry = results.remove(key);
+        if(entry != null){
+            ids -= entry.ids.size();
+        }
+    }
+
+    /**
+     * Key of cached results
+     * @param operation the operation that read the results
+     * @param condition the description of the condition
+     * @param orders the signature of the orders
+     * @param offset the offset of the page
+     * @param limit the limit of the page
+     * @param countMode the mode of the count, or null if there is no count
+     */
+    record Key(String operation, ConditionDescription condition, String orders, int offset, int limit, CountMode countMode) {
+    }
+
+    /**
+     * Cached results
+     * @param ids the IDs of the results
+     * @param count the count of the pagination, or null if there is no count
+     * @param estimated true if the count is estimated, false if not
+     * @param expiresAt the expiration time, in nanoseconds
+     * @param writeVersion the version of the writes of the entity before reading
+     */
+    record Entry(List<Object> ids, Long count, boolean estimated, long expiresAt, long writeVersion) {
+    }
+}
@@ -0,0 +1,58 @@
+package lf.sol.genericrepository.repository;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Metrics sink that logs the calls slower than a threshold, with the time of each phase, the number of rows and the
+ * condition (fields, operators and orders), without the values of the condition
+ */
+public final class SlowQueryLog implements RepositoryMetrics {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private final long thresholdNanos;
+    private final Consumer<String> log;
+
+    private SlowQueryLog(Duration threshold, Consumer<String> log) {
+        if(threshold.isNegative()){
+            throw new IllegalArgumentException("The threshold of the slow query log can't be less than zero");
+        }
+        this.thresholdNanos = threshold.toNanos();
+        this.log = log;
+    }
+
+    /**
+     * Method that generates a slow query log that writes to the platform logger, with the warning level
+     * @param threshold the minimum time of the logged calls
+     * @return the slow query log
+     */
+    public static SlowQueryLog of(Duration threshold){
+        System.Logger logger = System.getLogger(SlowQueryLog.class.getName());
+        return of(threshold, message -> logger.log(System.Logger.Level.WARNING, message));
+    }
+
+    /**
+     * Method that generates a slow query log that writes to a custom log
+     * @param threshold the minimum time of the logged calls
+     * @param log the log of the messages
+     * @return the slow query log
+     */
+    public static SlowQueryLog of(Duration threshold, Consumer<String> log){
+        return new SlowQueryLog(threshold, log);
+    }
+
+    @Override
+    public void record(QueryMetrics queryMetrics) {
+        long totalNanos = queryMetrics.getTotalNanos();
+        if(totalNanos < thresholdNanos){
+            return;
+        }
+        log.accept(String.format(Locale.ROOT, "Slow %s%s of %s: %.3f ms (build %.3f ms, execute %.3f ms, hydrate %.3f ms), %d rows, %s%s",
+                queryMetrics.isFailed() ? "failed " : "", queryMetrics.getOperation(), queryMetrics.getEntityClass().getSimpleName(),
+                totalNanos / NANOS_PER_MILLI, queryMetrics.getNanos(QueryPhase.BUILD) / NANOS_PER_MILLI,
+                queryMetrics.getNanos(QueryPhase.EXECUTE) / NANOS_PER_MILLI, queryMetrics.getNanos(QueryPhase.HYDRATE) / NANOS_PER_MILLI,
+                queryMetrics.getRows(), queryMetrics.getCondition(),
+                queryMetrics.getInListStrategy() != null ? ", in lists " + queryMetrics.getInListStrategy() : ""));
+    }
+}
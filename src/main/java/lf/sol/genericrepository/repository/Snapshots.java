@@ -0,0 +1,59 @@
+package lf.sol.genericrepository.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+
+/**
+ * Serialized snapshots of entities, which are restored into new detached copies that don't share state with the
+ * original entities or with the other copies
+ */
+final class Snapshots {
+
+    private Snapshots() {
+    }
+
+    /**
+     * Method that serializes an entity (or a list of entities) into a snapshot
+     * @param value the entity or the list of entities
+     * @return the bytes of the snapshot
+     * @throws IllegalArgumentException if the value can't be serialized
+     */
+    static byte[] serialize(Serializable value){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream output = new ObjectOutputStream(bytes)){
+            output.writeObject(value);
+        }catch(IOException e){
+            throw new IllegalArgumentException("The value " + value.getClass().getName() + " can't be serialized", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Method that deserializes a snapshot into a new copy of the entity (or of the list of entities)
+     * @param bytes the bytes of the snapshot
+     * @param classLoader the class loader of the entity
+     * @return the copy of the entity
+     * @throws IllegalStateException if the snapshot can't be restored
+     */
+    static Object deserialize(byte[] bytes, ClassLoader classLoader){
+        try(ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes)){
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass objectStreamClass) throws IOException, ClassNotFoundException {
+                try{
+                    return Class.forName(objectStreamClass.getName(), false, classLoader);
+                }catch(ClassNotFoundException e){
+                    return super.resolveClass(objectStreamClass);
+                }
+            }
+        }){
+            return input.readObject();
+        }catch(IOException | ClassNotFoundException e){
+            throw new IllegalStateException("The snapshot can't be restored", e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package lf.sol.genericrepository.repository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Dialects of the native upserts, the statements that insert the rows that don't exist and update the rows that
+ * already exist in one round trip, without reading them first
+ * The upserts write many rows in each statement, up to the parameter limit of the database
+ */
+public enum UpsertDialect {
+
+    /**
+     * MERGE INTO ... KEY (...) VALUES ...
+     */
+    H2(32767, "h2"),
+    /**
+     * INSERT INTO ... VALUES ... ON CONFLICT (...) DO UPDATE SET ...
+     */
+    POSTGRESQL(32767, "postgresql"),
+    /**
+     * INSERT INTO ... VALUES ... ON DUPLICATE KEY UPDATE ..., also for MariaDB
+     */
+    MYSQL(32767, "mysql", "mariadb"),
+    /**
+     * MERGE INTO ... USING (SELECT ... FROM DUAL UNION ALL ...) ...
+     */
+    ORACLE(32767, "oracle"),
+    /**
+     * MERGE INTO ... USING (VALUES ...) ...;
+     */
+    SQL_SERVER(2000, "sqlserver", "microsoft sql server");
+
+    private static final String[] URL_PROPERTIES = {"jakarta.persistence.jdbc.url", "javax.persistence.jdbc.url",
+            "hibernate.connection.url"};
+    private static final String[] DIALECT_PROPERTIES = {"hibernate.dialect", "eclipselink.target-database"};
+    private static final String[] PRODUCT_PROPERTIES = {"jakarta.persistence.database-product-name"};
+
+    private final int maxParameters;
+    private final String[] names;
+
+    UpsertDialect(int maxParameters, String... names) {
+        this.maxParameters = maxParameters;
+        this.names = names;
+    }
+
+    /**
+     * Method that detects the dialect of a persistence unit by the connection URL, the dialect of the provider or the
+     * name of the database, in its properties
+     * @param properties the properties of the persistence unit
+     * @return the dialect, or null if the database has no supported dialect or it can't be detected
+     */
+    static UpsertDialect detect(Map<String, Object> properties){
+        for(UpsertDialect dialect : values()){
+            for(String name : dialect.names){
+                if(matches(properties, URL_PROPERTIES, value -> value.startsWith("jdbc:" + name + ":"))
+                        || matches(properties, DIALECT_PROPERTIES, value -> value.contains(name))
+                        || matches(properties, PRODUCT_PROPERTIES, value -> value.equals(name))){
+                    return dialect;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method that gets the maximum number of rows of each statement, to stay under the parameter limit of the database
+     * @param columns the number of columns of each row
+     * @return the maximum number of rows
+     */
+    int maxRows(int columns){
+        return Math.max(1, maxParameters / columns);
+    }
+
+    /**
+     * Method that renders the upsert statement of some rows, with positional parameters
+     * @param table the table
+     * @param idColumn the column of the ID
+     * @param columns the columns, the ID column first
+     * @param rows the number of rows
+     * @return the upsert statement
+     */
+    String render(String table, String idColumn, List<String> columns, int rows){
+        List<String> otherColumns = columns.subList(1, columns.size());
+        String columnList = String.join(", ", columns);
+        String row = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String valueRows = String.join(", ", Collections.nCopies(rows, row));
+        return switch(this){
+            case H2 -> "MERGE INTO " + table + " (" + columnList + ") KEY (" + idColumn + ") VALUES " + valueRows;
+            case POSTGRESQL -> "INSERT INTO " + table + " (" + columnList + ") VALUES " + valueRows + " ON CONFLICT (" + idColumn + ") "
+                    + (otherColumns.isEmpty() ? "DO NOTHING" : "DO UPDATE SET " + otherColumns.stream()
+                    .map(column -> column + " = EXCLUDED." + column).collect(Collectors.joining(", ")));
+            case MYSQL -> "INSERT INTO " + table + " (" + columnList + ") VALUES " + valueRows + " ON DUPLICATE KEY UPDATE "
+                    + (otherColumns.isEmpty() ? idColumn + " = " + idColumn : otherColumns.stream()
+                    .map(column -> column + " = VALUES(" + column + ")").collect(Collectors.joining(", ")));
+            case ORACLE -> {
+                String selectRow = "SELECT " + columns.stream().map(column -> "? " + column).collect(Collectors.joining(", ")) + " FROM DUAL";
+                yield renderMerge(table, idColumn, columns, "(" + String.join(" UNION ALL ", Collections.nCopies(rows, selectRow)) + ") s",
+                        "(t." + idColumn + " = s." + idColumn + ")");
+            }
+            case SQL_SERVER -> renderMerge(table, idColumn, columns, "(VALUES " + valueRows + ") AS s (" + columnList + ")",
+                    "t." + idColumn + " = s." + idColumn) + ";";
+        };
+    }
+
+    /**
+     * Method that renders a standard merge statement
+     * @param table the table
+     * @param idColumn the column of the ID
+     * @param columns the columns, the ID column first
+     * @param source the source of the rows, with the alias s
+     * @param on the join condition between the table and the source
+     * @return the merge statement
+     */
+    private static String renderMerge(String table, String idColumn, List<String> columns, String source, String on){
+        List<String> otherColumns = columns.subList(1, columns.size());
+        return "MERGE INTO " + table + " t USING " + source + " ON " + on
+                + (otherColumns.isEmpty() ? "" : " WHEN MATCHED THEN UPDATE SET " + otherColumns.stream()
+                .map(column -> "t." + column + " = s." + column).collect(Collectors.joining(", ")))
+                + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) + ") VALUES ("
+                + columns.stream().map(column -> "s." + column).collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * Method that checks if some property of a persistence unit matches a dialect
+     * @param properties the properties of the persistence unit
+     * @param names the names of the properties
+     * @param matcher the matcher of the values, in lower case
+     * @return true if some property matches, false if not
+     */
+    private static boolean matches(Map<String, Object> properties, String[] names, Predicate<String> matcher){
+        for(String name : names){
+            Object value = properties.get(name);
+            if(value != null && matcher.test(value.toString().trim().toLowerCase(Locale.ROOT))){
+                return true;
+            }
+        }
+        return false;
+    }
+}
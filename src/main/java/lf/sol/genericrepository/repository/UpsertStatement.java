@@ -0,0 +1,336 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinColumns;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.MapsId;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.SecondaryTable;
+import jakarta.persistence.SecondaryTables;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.IdentifiableType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Native upsert statement of an entity, derived from its mapping metadata (the metamodel and the mapping annotations)
+ * Only the entities mapped to one table, with a single ID, without version and with basic fields and references to
+ * other entities have an upsert statement, the other mappings (embedded fields, converters, owned collections,
+ * inheritance) can't be written correctly without the provider
+ * The statements are compiled once per entity manager factory and entity class, since the dialect, the naming strategy
+ * and the mapping depend on the persistence unit, and the SQL of each number of rows is cached
+ */
+final class UpsertStatement {
+
+    private static final String NAMING_STRATEGY_PROPERTY = "hibernate.physical_naming_strategy";
+    private static final String UNDERSCORES_NAMING_STRATEGY = "CamelCaseToUnderscores";
+    private static final Set<String> PROVIDER_MAPPING_ANNOTATIONS = Set.of("org.hibernate.annotations.Formula",
+            "org.hibernate.annotations.JoinFormula", "org.hibernate.annotations.ColumnTransformer",
+            "org.hibernate.annotations.Type", "org.hibernate.annotations.JdbcTypeCode", "org.hibernate.annotations.Generated",
+            "org.eclipse.persistence.annotations.Convert", "org.eclipse.persistence.annotations.ReadTransformer");
+    private static final Map<StatementKey, Optional<UpsertStatement>> STATEMENTS = new ConcurrentHashMap<>();
+
+    private final UpsertDialect dialect;
+    private final String table;
+    private final List<String> columns;
+    private final List<ColumnValue> columnValues;
+    private final Map<Integer, String> sqlByRows;
+
+    private UpsertStatement(UpsertDialect dialect, String table, List<String> columns, List<ColumnValue> columnValues) {
+        this.dialect = dialect;
+        this.table = table;
+        this.columns = columns;
+        this.columnValues = columnValues;
+        this.sqlByRows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Method that gets the upsert statement of an entity, compiling it on the first use
+     * @param entityManagerFactory the entity manager factory of the entity
+     * @param entityType the entity type
+     * @return the upsert statement, or null if the database has no upsert dialect or the mapping of the entity is not
+     * supported
+     */
+    static UpsertStatement of(EntityManagerFactory entityManagerFactory, EntityType<?> entityType){
+        return STATEMENTS.computeIfAbsent(new StatementKey(entityManagerFactory, entityType.getJavaType()), key ->
+                Optional.ofNullable(compile(entityManagerFactory, entityType))).orElse(null);
+    }
+
+    /**
+     * Method that gets the maximum number of rows of each statement
+     * @return the maximum number of rows
+     */
+    int maxRows(){
+        return dialect.maxRows(columns.size());
+    }
+
+    /**
+     * Method that gets the SQL of the upsert of some rows
+     * @param rows the number of rows
+     * @return the SQL, with a positional parameter for each column of each row
+     */
+    String sql(int rows){
+        return sqlByRows.computeIfAbsent(rows, rowCount -> dialect.render(table, columns.getFirst(), columns, rowCount));
+    }
+
+    /**
+     * Method that reads the values of the columns of an entity, in the order of the parameters of a row
+     * @param entity the entity
+     * @param persistenceUnitUtil the utilities to get the IDs of the referenced entities
+     * @param values the values where the values of the entity are added
+     */
+    void appendValues(Object entity, PersistenceUnitUtil persistenceUnitUtil, List<Object> values){
+        for(ColumnValue columnValue : columnValues){
+            Object value = columnValue.accessor().value(entity);
+            if(value != null){
+                switch(columnValue.kind()){
+                    case ENUM_ORDINAL -> value = ((Enum<?>) value).ordinal();
+                    case ENUM_STRING -> value = ((Enum<?>) value).name();
+                    case REFERENCE -> value = persistenceUnitUtil.getIdentifier(value);
+                    default -> {
+                    }
+                }
+            }
+            values.add(value);
+        }
+    }
+
+    /**
+     * Method that compiles the upsert statement of an entity
+     * @param entityManagerFactory the entity manager factory of the entity
+     * @param entityType the entity type
+     * @return the upsert statement, or null if it is not supported
+     */
+    private static UpsertStatement compile(EntityManagerFactory entityManagerFactory, EntityType<?> entityType){
+        Map<String, Object> properties = entityManagerFactory.getProperties();
+        UpsertDialect dialect = UpsertDialect.detect(properties);
+        if(dialect == null || !isSingleTable(entityManagerFactory, entityType) || !entityType.hasSingleIdAttribute()
+                || entityType.hasVersionAttribute()){
+            return null;
+        }
+        Object namingStrategy = properties.get(NAMING_STRATEGY_PROPERTY);
+        boolean underscores = namingStrategy != null && namingStrategy.toString().contains(UNDERSCORES_NAMING_STRATEGY);
+
+        // the ID is the first column
+        SingularAttribute<?, ?> id = entityType.getId(entityType.getIdType().getJavaType());
+        List<String> columns = new ArrayList<>();
+        List<ColumnValue> columnValues = new ArrayList<>();
+        for(Attribute<?, ?> attribute : orderedAttributes(entityType, id)){
+            AnnotatedElement member = (AnnotatedElement) attribute.getJavaMember();
+            if(hasProviderMapping(member) || member.isAnnotationPresent(Convert.class)){
+                return null;
+            }
+            switch(attribute.getPersistentAttributeType()){
+                case BASIC -> {
+                    Column column = member.getAnnotation(Column.class);
+                    if(column != null && (!column.insertable() || !column.updatable())){
+                        return null;
+                    }
+                    columns.add(column != null && !column.name().isEmpty() ? column.name() : attribute.getName());
+                    columnValues.add(new ColumnValue(FieldAccessor.of(attribute.getName()), basicKind(attribute, member)));
+                }
+                case MANY_TO_ONE, ONE_TO_ONE -> {
+                    OneToOne oneToOne = member.getAnnotation(OneToOne.class);
+                    if(oneToOne != null && !oneToOne.mappedBy().isEmpty()){
+                        continue;
+                    }
+                    String column = joinColumn(attribute, member);
+                    if(column == null){
+                        return null;
+                    }
+                    columns.add(column);
+                    columnValues.add(new ColumnValue(FieldAccessor.of(attribute.getName()), ColumnKind.REFERENCE));
+                }
+                case ONE_TO_MANY, MANY_TO_MANY -> {
+                    // only the inverse collections are written by the other side
+                    OneToMany oneToMany = member.getAnnotation(OneToMany.class);
+                    ManyToMany manyToMany = member.getAnnotation(ManyToMany.class);
+                    if((oneToMany == null || oneToMany.mappedBy().isEmpty()) && (manyToMany == null || manyToMany.mappedBy().isEmpty())){
+                        return null;
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new UpsertStatement(dialect, physicalName(tableName(entityType), underscores),
+                columns.stream().map(column -> physicalName(column, underscores)).toList(), List.copyOf(columnValues));
+    }
+
+    /**
+     * Method that checks if an entity is mapped to one table, without inheritance and without secondary tables
+     * @param entityManagerFactory the entity manager factory of the entity
+     * @param entityType the entity type
+     * @return true if the entity is mapped to one table, false if not
+     */
+    private static boolean isSingleTable(EntityManagerFactory entityManagerFactory, EntityType<?> entityType){
+        Class<?> entityClass = entityType.getJavaType();
+        if(entityType.getSupertype() instanceof EntityType<?> || entityClass.isAnnotationPresent(SecondaryTable.class)
+                || entityClass.isAnnotationPresent(SecondaryTables.class)){
+            return false;
+        }
+        for(EntityType<?> otherEntityType : entityManagerFactory.getMetamodel().getEntities()){
+            for(IdentifiableType<?> supertype = otherEntityType.getSupertype(); supertype != null; supertype = supertype.getSupertype()){
+                if(supertype == entityType){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method that orders the attributes of an entity with the ID first
+     * @param entityType the entity type
+     * @param id the ID attribute
+     * @return the ordered attributes
+     */
+    private static List<Attribute<?, ?>> orderedAttributes(EntityType<?> entityType, SingularAttribute<?, ?> id){
+        List<Attribute<?, ?>> attributes = new ArrayList<>();
+        attributes.add(id);
+        entityType.getAttributes().stream().filter(attribute -> !attribute.getName().equals(id.getName()))
+                .sorted((attribute1, attribute2) -> attribute1.getName().compareTo(attribute2.getName()))
+                .forEach(attributes::add);
+        return attributes;
+    }
+
+    /**
+     * Method that gets the kind of the values of a basic field
+     * @param attribute the field
+     * @param member the member of the field, with its mapping annotations
+     * @return the kind of the values
+     */
+    private static ColumnKind basicKind(Attribute<?, ?> attribute, AnnotatedElement member){
+        if(!attribute.getJavaType().isEnum()){
+            return ColumnKind.BASIC;
+        }
+        Enumerated enumerated = member.getAnnotation(Enumerated.class);
+        return enumerated != null && enumerated.value() == EnumType.STRING ? ColumnKind.ENUM_STRING : ColumnKind.ENUM_ORDINAL;
+    }
+
+    /**
+     * Method that gets the foreign key column of a reference to other entity
+     * @param attribute the reference
+     * @param member the member of the reference, with its mapping annotations
+     * @return the column, or null if the reference has no single foreign key to the ID of the other entity
+     */
+    private static String joinColumn(Attribute<?, ?> attribute, AnnotatedElement member){
+        if(member.isAnnotationPresent(JoinColumns.class) || member.isAnnotationPresent(MapsId.class)){
+            return null;
+        }
+        JoinColumn joinColumn = member.getAnnotation(JoinColumn.class);
+        if(joinColumn != null && (!joinColumn.insertable() || !joinColumn.updatable() || !joinColumn.referencedColumnName().isEmpty())){
+            return null;
+        }
+        if(joinColumn != null && !joinColumn.name().isEmpty()){
+            return joinColumn.name();
+        }
+
+        // the default name is the name of the reference and the ID column of the other entity
+        Type<?> targetType = ((SingularAttribute<?, ?>) attribute).getType();
+        if(!(targetType instanceof EntityType<?> targetEntityType) || !targetEntityType.hasSingleIdAttribute()){
+            return null;
+        }
+        SingularAttribute<?, ?> targetId = targetEntityType.getId(targetEntityType.getIdType().getJavaType());
+        Column targetIdColumn = ((AnnotatedElement) targetId.getJavaMember()).getAnnotation(Column.class);
+        return attribute.getName() + "_" + (targetIdColumn != null && !targetIdColumn.name().isEmpty() ? targetIdColumn.name() : targetId.getName());
+    }
+
+    /**
+     * Method that gets the table of an entity, with its schema and catalog
+     * @param entityType the entity type
+     * @return the table
+     */
+    private static String tableName(EntityType<?> entityType){
+        Table table = entityType.getJavaType().getAnnotation(Table.class);
+        if(table == null){
+            return entityType.getName();
+        }
+        StringBuilder tableName = new StringBuilder();
+        if(!table.catalog().isEmpty()){
+            tableName.append(table.catalog()).append('.');
+        }
+        if(!table.schema().isEmpty()){
+            tableName.append(table.schema()).append('.');
+        }
+        return tableName.append(table.name().isEmpty() ? entityType.getName() : table.name()).toString();
+    }
+
+    /**
+     * Method that checks if a field has a mapping of the provider that changes its column or its values
+     * @param member the member of the field
+     * @return true if the field has a mapping of the provider, false if not
+     */
+    private static boolean hasProviderMapping(AnnotatedElement member){
+        return Arrays.stream(member.getAnnotations()).map(Annotation::annotationType).map(Class::getName)
+                .anyMatch(PROVIDER_MAPPING_ANNOTATIONS::contains);
+    }
+
+    /**
+     * Method that applies the physical naming of the provider to a name, which only changes the name if the
+     * provider converts the camel case names into lower case names with underscores
+     * @param name the name, the parts separated by dots
+     * @param underscores true if the names are converted, false if not
+     * @return the physical name
+     */
+    private static String physicalName(String name, boolean underscores){
+        if(!underscores){
+            return name;
+        }
+        return Arrays.stream(name.split("\\.")).map(part -> {
+            StringBuilder physicalPart = new StringBuilder(part);
+            for(int i = 1; i < physicalPart.length() - 1; i++){
+                if(Character.isLowerCase(physicalPart.charAt(i - 1)) && Character.isUpperCase(physicalPart.charAt(i))
+                        && Character.isLowerCase(physicalPart.charAt(i + 1))){
+                    physicalPart.insert(i++, '_');
+                }
+            }
+            return physicalPart.toString().toLowerCase(Locale.ROOT);
+        }).collect(Collectors.joining("."));
+    }
+
+    /**
+     * Kind of the values of a column
+     */
+    private enum ColumnKind {
+        BASIC, ENUM_ORDINAL, ENUM_STRING, REFERENCE
+    }
+
+    /**
+     * Column of the upsert statement
+     * @param accessor the reader of the field of the column
+     * @param kind the kind of the values
+     */
+    private record ColumnValue(FieldAccessor accessor, ColumnKind kind) {
+    }
+
+    /**
+     * Key of the upsert statement of an entity in a persistence unit
+     * @param entityManagerFactory the entity manager factory of the persistence unit
+     * @param entityClass the class of the entity
+     */
+    private record StatementKey(EntityManagerFactory entityManagerFactory, Class<?> entityClass) {
+    }
+}
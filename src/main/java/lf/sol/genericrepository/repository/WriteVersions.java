@@ -0,0 +1,263 @@
+package lf.sol.genericrepository.repository;
+
+import jakarta.persistence.EntityManager;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the writes of each entity, shared by all the repositories, that invalidate the cached reads
+ * A write inside a transaction changes the version when it is done and again when its transaction completes (commit
+ * or rollback), and while the transaction is open the reads of the entity are not cached, so the caches only keep
+ * committed state
+ * The first write of a transaction registers a token of the transaction, and a synchronization of the transaction
+ * (of the Hibernate transactions, or of the JTA registry of the container) removes the token when the transaction
+ * completes, in the thread of the transaction, so the entity managers of other threads are never used
+ * Without synchronizations, the token is removed when its entity manager is used again by a repository after the
+ * transaction, or when the entity manager is collected, and the entities stay pending meanwhile
+ */
+final class WriteVersions {
+
+    /**
+     * Version of the reads that can't be cached, because the entity has writes in open transactions
+     */
+    static final long PENDING = -1;
+    private static final String SYNCHRONIZATION_CLASS = "jakarta.transaction.Synchronization";
+    private static final String REGISTER_SYNCHRONIZATION_METHOD = "registerSynchronization";
+    private static final String SYNCHRONIZATION_REGISTRY = "java:comp/TransactionSynchronizationRegistry";
+    private static final String REGISTER_INTERPOSED_SYNCHRONIZATION_METHOD = "registerInterposedSynchronization";
+    private static final String AFTER_COMPLETION_METHOD = "afterCompletion";
+    private static final Map<Class<?>, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+    private static final Map<TransactionKey, TransactionToken> OPEN_WRITES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<EntityManager> COLLECTED = new ReferenceQueue<>();
+
+    private WriteVersions() {
+    }
+
+    /**
+     * Method that records a write of an entity, which invalidates its cached reads, and keeps the entity pending
+     * until the transaction of the write completes
+     * @param entityClass the class of the entity
+     * @param entityManager the entity manager of the write
+     */
+    static void record(Class<?> entityClass, EntityManager entityManager){
+        drainCollected();
+        completeUnsynchronized(entityManager);
+        EntityManager transaction = getTransaction(entityManager);
+        if(transaction != null){
+            TransactionKey key = new TransactionKey(transaction);
+            TransactionToken token = OPEN_WRITES.get(key);
+            if(token == null){
+                key = new TransactionKey(transaction, COLLECTED);
+                token = new TransactionToken(ConcurrentHashMap.newKeySet(), registerSynchronization(entityManager, key));
+                OPEN_WRITES.put(key, token);
+            }
+            token.entityClasses().add(entityClass);
+        }
+        increment(entityClass);
+    }
+
+    /**
+     * Method that gets the version of the writes of an entity
+     * The version is read before reading, so that a read started before a write is not cached
+     * @param entityClass the class of the entity
+     * @return the version of the writes, or PENDING if a transaction that wrote the entity is still open
+     */
+    static long of(Class<?> entityClass){
+        if(!OPEN_WRITES.isEmpty()){
+            drainCollected();
+            for(TransactionToken token : OPEN_WRITES.values()){
+                if(token.entityClasses().contains(entityClass)){
+                    return PENDING;
+                }
+            }
+        }
+        AtomicLong version = VERSIONS.get(entityClass);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Method that checks if the transaction of an entity manager wrote through a repository, in which case its reads
+     * may see its uncommitted writes and can't use the shared caches
+     * @param entityManager the entity manager
+     * @return true if the transaction of the entity manager has writes, false if not
+     */
+    static boolean isWriting(EntityManager entityManager){
+        if(OPEN_WRITES.isEmpty()){
+            return false;
+        }
+        drainCollected();
+        completeUnsynchronized(entityManager);
+        EntityManager transaction = getTransaction(entityManager);
+        return transaction != null && OPEN_WRITES.containsKey(new TransactionKey(transaction));
+    }
+
+    /**
+     * Method that removes the token of a completed transaction, changing the versions of its entities
+     * @param key the key of the transaction
+     */
+    private static void complete(TransactionKey key){
+        TransactionToken token = OPEN_WRITES.remove(key);
+        if(token != null){
+            token.entityClasses().forEach(WriteVersions::increment);
+        }
+    }
+
+    /**
+     * Method that removes the tokens of the transactions whose entity managers were collected
+     */
+    private static void drainCollected(){
+        for(Object key = COLLECTED.poll(); key != null; key = COLLECTED.poll()){
+            complete((TransactionKey) key);
+        }
+    }
+
+    /**
+     * Method that removes the token of the last transaction of an entity manager without synchronization, if it
+     * completed
+     * Only the entity manager of the caller is checked, since an entity manager is used by one thread at a time
+     * @param entityManager the entity manager of the caller
+     */
+    private static void completeUnsynchronized(EntityManager entityManager){
+        if(OPEN_WRITES.isEmpty() || entityManager == null){
+            return;
+        }
+        TransactionKey key = new TransactionKey(entityManager);
+        TransactionToken token = OPEN_WRITES.get(key);
+        if(token != null && !token.synchronizedByTransaction()
+                && (!entityManager.isOpen() || isResourceLocal(entityManager) && !entityManager.getTransaction().isActive())){
+            complete(key);
+        }
+    }
+
+    /**
+     * Method that changes the version of the writes of an entity
+     * @param entityClass the class of the entity
+     */
+    private static void increment(Class<?> entityClass){
+        VERSIONS.computeIfAbsent(entityClass, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Method that registers a synchronization that completes the token of a transaction when the transaction
+     * completes
+     * The resource local transactions are synchronized by the Hibernate transactions, and the JTA transactions by the
+     * synchronization registry of the container, by reflection to not depend on the provider or on the JTA
+     * @param entityManager the entity manager of the transaction
+     * @param key the key of the transaction
+     * @return true if the synchronization was registered, false if there are no synchronizations
+     */
+    private static boolean registerSynchronization(EntityManager entityManager, TransactionKey key){
+        try{
+            Class<?> synchronizationClass = Class.forName(SYNCHRONIZATION_CLASS, false, entityManager.getClass().getClassLoader());
+            Object synchronization = Proxy.newProxyInstance(synchronizationClass.getClassLoader(),
+                    new Class<?>[]{synchronizationClass}, (proxy, method, args) -> switch(method.getName()){
+                        case AFTER_COMPLETION_METHOD -> {
+                            complete(key);
+                            yield null;
+                        }
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "toString" -> "Synchronization of the write versions";
+                        default -> null;
+                    });
+            Object registry;
+            Method register;
+            if(isResourceLocal(entityManager)){
+                registry = entityManager.getTransaction();
+                register = registry.getClass().getMethod(REGISTER_SYNCHRONIZATION_METHOD, synchronizationClass);
+            }else{
+                registry = new InitialContext().lookup(SYNCHRONIZATION_REGISTRY);
+                register = registry.getClass().getMethod(REGISTER_INTERPOSED_SYNCHRONIZATION_METHOD, synchronizationClass);
+            }
+            register.invoke(registry, synchronization);
+            return true;
+        }catch(ReflectiveOperationException | NamingException | RuntimeException | LinkageError e){
+            // the provider or the container has no synchronizations
+            return false;
+        }
+    }
+
+    /**
+     * Method that gets the key of the active transaction of an entity manager
+     * A resource local transaction is identified by its entity manager, and a JTA transaction by the entity manager
+     * bound to it, since the entity managers of a container delegate to a different entity manager on each transaction
+     * @param entityManager the entity manager
+     * @return the key of the transaction, or null if there is no active transaction
+     */
+    private static EntityManager getTransaction(EntityManager entityManager){
+        if(entityManager == null || !entityManager.isOpen()){
+            return null;
+        }
+        try{
+            return entityManager.getTransaction().isActive() ? entityManager : null;
+        }catch(IllegalStateException e){
+            return entityManager.isJoinedToTransaction() ? entityManager.unwrap(EntityManager.class) : null;
+        }
+    }
+
+    /**
+     * Method that checks if the transactions of an entity manager are resource local
+     * @param entityManager the entity manager
+     * @return true if the transactions are resource local, false if they are JTA transactions
+     */
+    private static boolean isResourceLocal(EntityManager entityManager){
+        try{
+            entityManager.getTransaction();
+            return true;
+        }catch(IllegalStateException e){
+            return false;
+        }
+    }
+
+    /**
+     * Key of an open transaction, that holds its entity manager weakly and compares it by identity
+     * The keys of the tokens are queued when their entity managers are collected, and the keys of the lookups are not
+     */
+    private static final class TransactionKey extends WeakReference<EntityManager> {
+
+        private final int hash;
+
+        private TransactionKey(EntityManager transaction) {
+            this(transaction, null);
+        }
+
+        private TransactionKey(EntityManager transaction, ReferenceQueue<EntityManager> queue) {
+            super(transaction, queue);
+            this.hash = System.identityHashCode(transaction);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if(this == object){
+                return true;
+            }
+            if(!(object instanceof TransactionKey other)){
+                return false;
+            }
+            EntityManager transaction = get();
+            return transaction != null && transaction == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Token of the writes of an open transaction
+     * @param entityClasses the classes of the written entities
+     * @param synchronizedByTransaction true if a synchronization of the transaction removes the token, false if not
+     */
+    private record TransactionToken(Set<Class<?>> entityClasses, boolean synchronizedByTransaction) {
+    }
+}